@@ -0,0 +1,57 @@
+package net.nullstorm.insomnia_reminder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Config persistence round trips in a scratch directory. save is the atomic write the background
+ * writer performs; saveAsync is what the config screen pays on the client thread.
+ */
+@State(Scope.Thread)
+public class ConfigBenchmark {
+
+    private Path dir;
+    private InsomniaReminderConfig cfg;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("insomnia-reminder-bench");
+        cfg = new InsomniaReminderConfig();
+        cfg.customMessagesEnabled = true;
+        cfg.customMorning1 = "Rise and shine, sleepyhead!";
+        cfg.customNight1 = "Beds exist for a reason.";
+        cfg.save(dir);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public InsomniaReminderConfig load() {
+        return InsomniaReminderConfig.load(dir);
+    }
+
+    @Benchmark
+    public void save() {
+        cfg.save(dir);
+    }
+
+    @Benchmark
+    public void saveAsync() {
+        cfg.saveAsync(dir);
+    }
+}
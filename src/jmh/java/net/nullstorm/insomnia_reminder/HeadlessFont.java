@@ -0,0 +1,36 @@
+package net.nullstorm.insomnia_reminder;
+
+/**
+ * Stand-in for TextRenderer.getWidth: per-glyph advance widths close to the vanilla default font,
+ * summed over the string the same way the real renderer walks it.
+ */
+final class HeadlessFont {
+
+    private HeadlessFont() {
+    }
+
+    static int width(String s) {
+        int w = 0;
+        for (int i = 0; i < s.length(); ) {
+            int cp = s.codePointAt(i);
+            w += advance(cp);
+            i += Character.charCount(cp);
+        }
+        return w;
+    }
+
+    private static int advance(int cp) {
+        switch (cp) {
+            case 'i', 'l', '!', '\'', '.', ',', ':', ';', '|':
+                return 2;
+            case 't', 'I', ' ', '[', ']':
+                return 4;
+            case 'f', 'k', '<', '>', '"', '(', ')', '*', '{', '}':
+                return 5;
+            case '@', '~':
+                return 7;
+            default:
+                return cp < 128 ? 6 : 9;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package net.nullstorm.insomnia_reminder;
+
+/**
+ * Log-linear latency histogram in nanoseconds: exact below 32 ns, then 32 buckets per power of two
+ * (about 3% resolution), up to ~2^40 ns. Recording doesn't allocate. Not thread-safe; keep one per
+ * thread and {@link #add} them up.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = SUB + (MAX_EXPONENT - SUB_BITS + 1) * SUB;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    private long max;
+
+    void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts[index(nanos)]++;
+        total++;
+        if (nanos > max) max = nanos;
+    }
+
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) counts[i] += other.counts[i];
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    long count() {
+        return total;
+    }
+
+    long max() {
+        return max;
+    }
+
+    /** Upper bound of the bucket holding quantile {@code q} (0-1); 0 when empty. */
+    long percentile(double q) {
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(upperBound(i), max);
+        }
+        return max;
+    }
+
+    private static int index(long v) {
+        if (v < SUB) return (int) v;
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(v), MAX_EXPONENT);
+        int sub = (int) Math.min(v >>> (exponent - SUB_BITS), 2 * SUB - 1) - SUB;
+        return SUB + (exponent - SUB_BITS) * SUB + sub;
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB) return index;
+        int exponent = (index - SUB) / SUB + SUB_BITS;
+        int sub = (index - SUB) % SUB;
+        return ((long) (SUB + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+}
@@ -0,0 +1,76 @@
+package net.nullstorm.insomnia_reminder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Message selection: the built-in pools through chooseMessage, raw sampler draws
+ * from pools the size of large community message packs, and placeholder rendering.
+ */
+@State(Scope.Thread)
+public class MessageBenchmark {
+
+    @Param({"12", "1000", "100000"})
+    public int poolSize;
+
+    private MessageSampler sampler;
+    private ReminderTick reminder;
+    private ConfigSnapshot config;
+    private Random random;
+    private MessageTemplate template;
+    private final StringBuilder buffer = new StringBuilder(128);
+    private final MessageTemplate.Values values = new MessageTemplate.Values() {
+        @Override
+        public String playerName() {
+            return "Steve";
+        }
+
+        @Override
+        public long worldTime() {
+            return 1_234_567;
+        }
+
+        @Override
+        public int timeSinceRest() {
+            return 80_000;
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setup() {
+        random = new Random(42);
+
+        MessageSampler.Builder b = MessageSampler.builder();
+        for (int i = 0; i < poolSize; i++) b.add("Message number " + i, 1 + random.nextInt(100));
+        sampler = b.build();
+
+        template = MessageTemplate.compile("{player}, you've been awake {days_awake} days. It's {time}, phantoms in ~{phantom_eta}.");
+
+        // The built-in pools normally come from the resource reload; use the copy in the jar.
+        MessagePools pools = MessagePools.compile(null, DefaultMessages.builtIn(DefaultMessages.FALLBACK_LANGUAGE), List.of(), null);
+        config = ConfigSnapshot.DEFAULTS.withPools(pools);
+        reminder = new ReminderTick(new ReminderStateMachine(), new NotificationDispatcher(), values, random);
+    }
+
+    @Benchmark
+    public MessageTemplate samplerDraw() {
+        return sampler.next(random);
+    }
+
+    @Benchmark
+    public String chooseMessage() {
+        return reminder.chooseMessage(config, true);
+    }
+
+    @Benchmark
+    public String renderTemplate() {
+        return template.render(values, buffer);
+    }
+}
@@ -0,0 +1,34 @@
+package net.nullstorm.insomnia_reminder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Trigger-evaluation throughput over a realistic trace (sleeps, jumps, lag spikes, dimension trips),
+ * reported per tick. The trace is generated once and replayed from memory.
+ */
+@State(Scope.Thread)
+public class ReplayBenchmark {
+
+    private static final int TRACE_TICKS = 1_000_000;
+
+    private TraceBuffer trace;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        trace = TraceBuffer.capture(new SyntheticTrace(42, TRACE_TICKS), TRACE_TICKS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRACE_TICKS)
+    public long replay() {
+        trace.rewind();
+        TraceReplay replay = new TraceReplay(false, false);
+        replay.replay(trace);
+        return replay.mornings + replay.nights;
+    }
+}
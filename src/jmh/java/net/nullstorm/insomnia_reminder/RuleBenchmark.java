@@ -0,0 +1,62 @@
+package net.nullstorm.insomnia_reminder;
+
+import net.nullstorm.insomnia_reminder.InsomniaReminderConfig.ReminderRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * User-defined rule evaluation per client tick as the rule count grows. Rules get random
+ * 200-1000 tick windows, a stat condition on one of a few statistics and, for some, weather and
+ * dimension conditions; world time advances one tick per call, through every window.
+ */
+@State(Scope.Thread)
+public class RuleBenchmark {
+
+    private static final String[] STATS = {"time_since_rest", "play_time", "jump", "sleep_in_bed"};
+
+    @Param({"1", "16", "256"})
+    public int ruleCount;
+
+    private ReminderRules rules;
+    private int[] stats;
+    private long[] cooldowns;
+    private final int[] fired = new int[16];
+    private long time;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        List<ReminderRule> list = new ArrayList<>();
+        for (int i = 0; i < ruleCount; i++) {
+            ReminderRule r = new ReminderRule();
+            r.message = "Rule " + i;
+            r.fromTick = random.nextInt(24000);
+            r.toTick = (r.fromTick + 200 + random.nextInt(800)) % 24000;
+            r.stat = STATS[random.nextInt(STATS.length)];
+            r.statAtLeast = random.nextInt(100_000);
+            if (random.nextInt(4) == 0) r.weather = ReminderRule.Weather.RAIN;
+            if (random.nextInt(4) == 0) r.dimension = "minecraft:overworld";
+            list.add(r);
+        }
+        rules = ReminderRules.compile(list, id -> true);
+        cooldowns = rules.cooldowns();
+        stats = new int[rules.statIds().length];
+        for (int i = 0; i < stats.length; i++) stats[i] = random.nextInt(100_000);
+        time = 1000;
+    }
+
+    @Benchmark
+    public int tick() {
+        long t = time++;
+        if (!rules.anyCandidate(t)) return 0;
+        return rules.step(t, t, 0, ReminderRules.WEATHER_CLEAR, stats, cooldowns, fired);
+    }
+}
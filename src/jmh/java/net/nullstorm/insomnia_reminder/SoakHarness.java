@@ -0,0 +1,333 @@
+package net.nullstorm.insomnia_reminder;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Soak test: thousands of {@link SoakSession}s, one virtual thread each, play for hours of simulated
+ * time at once while config edits and reloads are published to {@link InsomniaReminderClient#CONFIG}
+ * through the client's {@link ConfigPublisher}. Reports tick latency percentiles, heap growth, and what is
+ * still reachable afterwards.
+ * <p>
+ * Fails if, once every session has left, a released world or a superseded config snapshot is still
+ * reachable, a session didn't adopt the last published config, or {@code CONFIG} isn't it.
+ * <p>
+ * Run with {@code ./gradlew soak}; pass {@code -PsoakArgs="..."} for options:
+ * {@code --sessions N}, {@code --hours H} (simulated play per session), {@code --seed S},
+ * {@code --edit-chance P} and {@code --reload-chance P} (per session tick),
+ * {@code --minutes M} (wall-clock limit) and {@code --report-seconds S}.
+ */
+public final class SoakHarness {
+
+    private static final long TICKS_PER_HOUR = 20L * 60 * 60;
+
+    final double editChance;
+    final double reloadChance;
+
+    private final Path configDir;
+    private final Object configLock = new Object();
+    private final DefaultMessages defaults = DefaultMessages.builtIn(DefaultMessages.FALLBACK_LANGUAGE);
+    // The client's publishing steps, with the pools compiled from the jar's messages and every
+    // statistic treated as known (no registries here).
+    private final ConfigPublisher publisher = new ConfigPublisher(
+            cfg -> MessagePools.compile(cfg, defaults, List.of(), DefaultMessages.FALLBACK_LANGUAGE),
+            cfg -> ReminderRules.compile(cfg.rules, id -> true));
+    private final Queue<WeakReference<SoakSession.World>> releasedWorlds = new ConcurrentLinkedQueue<>();
+    private final List<WeakReference<ConfigSnapshot>> published = new ArrayList<>(); // guarded by configLock
+    private ConfigSnapshot lastPublished; // guarded by configLock
+    private int editCount; // guarded by configLock
+    private volatile boolean stopped;
+
+    private SoakHarness(Path configDir, double editChance, double reloadChance) {
+        this.configDir = configDir;
+        this.editChance = editChance;
+        this.reloadChance = reloadChance;
+    }
+
+    boolean stopped() {
+        return stopped;
+    }
+
+    void released(SoakSession.World world) {
+        if (world != null) releasedWorlds.add(new WeakReference<>(world));
+    }
+
+    /** The config screen's path: edit a copy of the running config, save it, publish with a full recompile. */
+    void editConfig(SplittableRandom random) {
+        synchronized (configLock) {
+            InsomniaReminderConfig cfg = InsomniaReminderClient.CONFIG.editableCopy();
+            mutate(cfg, random, ++editCount);
+            cfg.save(configDir);
+            publish(cfg, true);
+        }
+    }
+
+    /** The config watcher's path: read the file back and publish only what changed. */
+    void reloadConfig() {
+        synchronized (configLock) {
+            publish(InsomniaReminderConfig.load(configDir), false);
+        }
+    }
+
+    // Caller holds configLock, which also guards the record of what was published.
+    private void publish(InsomniaReminderConfig newCfg, boolean recompile) {
+        ConfigSnapshot next = publisher.publish(newCfg, recompile);
+        if (next == null) return;
+        lastPublished = next;
+        published.add(new WeakReference<>(next));
+    }
+
+    private static void mutate(InsomniaReminderConfig cfg, SplittableRandom random, int n) {
+        switch (random.nextInt(7)) {
+            case 0 -> {
+                cfg.morningEnabled = random.nextInt(4) != 0;
+                cfg.nightEnabled = random.nextInt(4) != 0;
+                cfg.nightAlwaysPlays = random.nextBoolean();
+                // Mostly on; a disabled mod would make the rest of the soak idle.
+                cfg.enabled = random.nextInt(20) != 0;
+            }
+            case 1 -> cfg.volumePercent = random.nextInt(101);
+            case 2 -> {
+                InsomniaReminderConfig.MessageDisplayMode[] modes = InsomniaReminderConfig.MessageDisplayMode.values();
+                cfg.messageDisplayMode = modes[random.nextInt(modes.length)];
+            }
+            case 3 -> {
+                cfg.ultraRareMessages = random.nextBoolean();
+                cfg.ultraRareChancePercent = random.nextInt(11);
+            }
+            case 4, 5 -> {
+                cfg.customMessagesEnabled = random.nextInt(3) != 0;
+                cfg.includeDefaultMessagesWhenCustomPresent = random.nextBoolean();
+                cfg.customMorning1 = "Morning {player}, it's {time} (edit " + n + ")";
+                cfg.customMorning1Weight = 1 + random.nextInt(100);
+                cfg.customNight1 = "{player}, {days_awake} days awake (edit " + n + ")";
+                cfg.customNight1Weight = 1 + random.nextInt(100);
+            }
+            default -> {
+                cfg.rules.clear();
+                for (int i = random.nextInt(4); i > 0; i--) cfg.rules.add(randomRule(random, n));
+            }
+        }
+    }
+
+    private static InsomniaReminderConfig.ReminderRule randomRule(SplittableRandom random, int n) {
+        InsomniaReminderConfig.ReminderRule r = new InsomniaReminderConfig.ReminderRule();
+        r.name = "soak " + n;
+        r.fromTick = random.nextInt(24000);
+        r.toTick = random.nextInt(24000);
+        if (random.nextBoolean()) {
+            r.stat = "minecraft:time_since_rest";
+            r.statAtLeast = random.nextInt(72000);
+        }
+        if (random.nextInt(3) == 0) r.dimension = "minecraft:the_nether";
+        r.cooldownTicks = 1200 + random.nextInt(24000);
+        r.message = "{player}: rule " + n + " at {time}";
+        r.sound = InsomniaReminderConfig.ReminderRule.RuleSound.values()[random.nextInt(3)];
+        return r;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int sessionCount = 2000;
+        double hours = 2;
+        long seed = 42;
+        double editChance = 2e-7;
+        double reloadChance = 2e-7;
+        double minutes = 0;
+        int reportSeconds = 10;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sessions" -> sessionCount = Integer.parseInt(args[++i]);
+                case "--hours" -> hours = Double.parseDouble(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--edit-chance" -> editChance = Double.parseDouble(args[++i]);
+                case "--reload-chance" -> reloadChance = Double.parseDouble(args[++i]);
+                case "--minutes" -> minutes = Double.parseDouble(args[++i]);
+                case "--report-seconds" -> reportSeconds = Integer.parseInt(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        Path configDir = Files.createTempDirectory("insomnia-reminder-soak");
+        try {
+            boolean failed = new SoakHarness(configDir, editChance, reloadChance)
+                    .run(sessionCount, (long) (hours * TICKS_PER_HOUR), seed, minutes, reportSeconds);
+            if (failed) System.exit(1);
+        } finally {
+            deleteTree(configDir);
+        }
+    }
+
+    private boolean run(int sessionCount, long ticksPerSession, long seed, double minutes, int reportSeconds)
+            throws InterruptedException {
+        // Starting state: defaults, saved, published, as after the client's startup load.
+        InsomniaReminderConfig initial = new InsomniaReminderConfig();
+        initial.save(configDir);
+        synchronized (configLock) {
+            InsomniaReminderClient.CONFIG = ConfigSnapshot.DEFAULTS;
+            publish(initial, true);
+        }
+
+        long baseline = heapAfterGc();
+
+        SoakSession[] sessions = new SoakSession[sessionCount];
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (int i = 0; i < sessionCount; i++) sessions[i] = new SoakSession(this, i, seeds.nextLong(), ticksPerSession);
+
+        System.out.printf(Locale.ROOT, "Soak: %d sessions x %.1f h of play (%d ticks each), baseline heap %s%n",
+                sessionCount, ticksPerSession / (double) TICKS_PER_HOUR, ticksPerSession, mib(baseline));
+
+        long start = System.nanoTime();
+        long deadline = minutes > 0 ? start + (long) (minutes * 60e9) : Long.MAX_VALUE;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (SoakSession session : sessions) executor.submit(session);
+            executor.shutdown();
+            while (!executor.awaitTermination(reportSeconds, TimeUnit.SECONDS)) {
+                long done = 0;
+                for (SoakSession session : sessions) done += session.ticks;
+                System.out.printf(Locale.ROOT, "  %5.0f s: %5.1f%% of ticks, heap %s (after last GC %s), %d config edits%n",
+                        (System.nanoTime() - start) / 1e9, 100.0 * done / ((double) ticksPerSession * sessionCount),
+                        mib(heapUsed()), mib(heapAfterLastGc()), editCount());
+                if (System.nanoTime() > deadline) stopped = true;
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        // Every session leaves its world and takes one more tick; each must now run on the last config.
+        int staleSessions = 0;
+        for (SoakSession session : sessions) {
+            if (!session.finish()) staleSessions++;
+        }
+        ConfigSnapshot last;
+        synchronized (configLock) {
+            last = lastPublished;
+        }
+        boolean configCurrent = InsomniaReminderClient.CONFIG == last;
+
+        LatencyHistogram latency = new LatencyHistogram();
+        long[] totals = new long[15];
+        for (SoakSession s : sessions) {
+            latency.add(s.latency);
+            long[] c = {s.ticks, s.joins, s.dimensionChanges, s.jumps, s.sleeps, s.mornings, s.nights,
+                    s.rulesFired, s.delivered, s.soundsPlayed, s.textChars, s.configEdits, s.configReloads, s.days,
+                    s.joinMisfires};
+            for (int i = 0; i < c.length; i++) totals[i] += c[i];
+        }
+        last = null;
+
+        // Leak checks while the sessions are still alive: out of their worlds, none may keep one.
+        heapAfterGc();
+        int retainedWorlds = 0;
+        for (WeakReference<SoakSession.World> ref : releasedWorlds) {
+            if (ref.get() != null) retainedWorlds++;
+        }
+        int retainedSnapshots = 0;
+        int snapshots;
+        synchronized (configLock) {
+            snapshots = published.size();
+            for (WeakReference<ConfigSnapshot> ref : published) {
+                ConfigSnapshot s = ref.get();
+                if (s != null && s != InsomniaReminderClient.CONFIG) retainedSnapshots++;
+            }
+        }
+        Arrays.fill(sessions, null);
+        long after = heapAfterGc();
+
+        System.out.printf(Locale.ROOT, "%d ticks (%.1f h of play) in %.1f s, %.2f M ticks/s%n",
+                totals[0], totals[0] / (double) TICKS_PER_HOUR, seconds, totals[0] / seconds / 1e6);
+        System.out.printf(Locale.ROOT, "  joins=%d dimensionChanges=%d jumps=%d sleeps=%d days=%d mornings=%d nights=%d rules=%d%n",
+                totals[1], totals[2], totals[3], totals[4], totals[13], totals[5], totals[6], totals[7]);
+        System.out.printf(Locale.ROOT, "  delivered=%d sounds=%d textChars=%d configEdits=%d configReloads=%d snapshots=%d%n",
+                totals[8], totals[9], totals[10], totals[11], totals[12], snapshots);
+        System.out.printf(Locale.ROOT, "  tick latency: p50 %s  p99 %s  p999 %s  max %s%n",
+                micros(latency.percentile(0.5)), micros(latency.percentile(0.99)),
+                micros(latency.percentile(0.999)), micros(latency.max()));
+        System.out.printf(Locale.ROOT, "  heap after GC: %s -> %s (%+.1f MiB)%n",
+                mib(baseline), mib(after), (after - baseline) / 1048576.0);
+        System.out.printf(Locale.ROOT, "  retained: %d of %d released worlds, %d superseded config snapshots%n",
+                retainedWorlds, releasedWorlds.size(), retainedSnapshots);
+
+        boolean failed = false;
+        if (retainedWorlds > 0) {
+            System.out.println("FAIL: released worlds are still reachable");
+            failed = true;
+        }
+        if (retainedSnapshots > 0) {
+            System.out.println("FAIL: superseded config snapshots are still reachable");
+            failed = true;
+        }
+        if (!configCurrent) {
+            System.out.println("FAIL: CONFIG is not the last published snapshot");
+            failed = true;
+        }
+        if (totals[14] > 0) {
+            System.out.printf("FAIL: %d reminders fired out of their window on a world's first tick%n", totals[14]);
+            failed = true;
+        }
+        if (staleSessions > 0) {
+            System.out.printf("FAIL: %d sessions did not adopt the last published config%n", staleSessions);
+            failed = true;
+        }
+        return failed;
+    }
+
+    private int editCount() {
+        synchronized (configLock) {
+            return editCount;
+        }
+    }
+
+    private static long heapAfterGc() throws InterruptedException {
+        // Several rounds, so weak references are cleared and their referents actually collected.
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return heapUsed();
+    }
+
+    private static long heapUsed() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    // Heap in use right after the most recent collection of each pool; doesn't force a GC.
+    private static long heapAfterLastGc() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+            if (usage != null) used += usage.getUsed();
+        }
+        return used;
+    }
+
+    private static String mib(long bytes) {
+        return String.format(Locale.ROOT, "%.1f MiB", bytes / 1048576.0);
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.2f us", nanos / 1000.0);
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package net.nullstorm.insomnia_reminder;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * One simulated client for {@link SoakHarness}: joins worlds, plays a {@link SyntheticTrace} in each
+ * (sleeps, {@code /time set}, lag, trips to the Nether and End), leaves, sits in the menus, and now
+ * and then edits or reloads the config. Runs on its own virtual thread.
+ * <p>
+ * Each tick runs the client's own {@link ReminderTick} and {@link NotificationDispatcher} against
+ * stand-ins: the session is the tick's {@link ReminderTick.Host}, the world is a {@link World},
+ * TIME_SINCE_REST comes from the trace the way {@link ClientObservations} learns it, and sounds and
+ * text go to counting sinks. Every session has its own tick, so its own machine and rule cooldowns;
+ * only the published config snapshots are shared.
+ */
+final class SoakSession implements Runnable, ReminderTick.Host {
+
+    /** Stand-in for a ClientWorld; a new one on every join and dimension change, like the real client. */
+    static final class World {
+        final byte dimension;
+        // A new ClientWorld reads 06:00 until its first world time packet.
+        boolean timeSynced;
+        // About what a small client world keeps around, so a leaked one shows up in the heap numbers.
+        final long[] payload = new long[2048];
+
+        World(byte dimension) {
+            this.dimension = dimension;
+        }
+    }
+
+    private static final String[] DIMENSION_IDS = {"minecraft:overworld", "minecraft:the_nether", "minecraft:the_end"};
+
+    // Thread.yield() once per simulated second, as a real client hands the CPU back between frames.
+    private static final int YIELD_MASK = 31;
+
+    private static final int MIN_VISIT_TICKS = 6_000;
+    private static final int MAX_VISIT_TICKS = 72_000;
+    private static final int MAX_MENU_TICKS = 600;
+
+    private final SoakHarness harness;
+    private final int id;
+    private final long seed;
+    private final long budgetTicks;
+    private final SplittableRandom random;
+
+    private final ReminderStateMachine machine = new ReminderStateMachine();
+    private final NotificationDispatcher notifications = new NotificationDispatcher();
+    private final ReminderTick reminders;
+    private final int[] ruleStats = new int[16];
+
+    final LatencyHistogram latency = new LatencyHistogram();
+
+    private World world;
+
+    // Client-side view of the current world, as ClientObservations keeps it.
+    private boolean started;
+    private long lastTime;
+    private long lastAge;
+    private int lastSynced;
+    private int knownRest;
+    private long worldTime;
+    // The tick that first reads a world's time: nothing seen before it may count.
+    private boolean firstStep;
+
+    long ticks;
+    long joins;
+    long dimensionChanges;
+    long jumps;
+    long sleeps;
+    long days;
+    long mornings;
+    long nights;
+    long rulesFired;
+    long delivered;
+    long soundsPlayed;
+    long textChars;
+    long configEdits;
+    long configReloads;
+    long joinMisfires;
+
+    SoakSession(SoakHarness harness, int id, long seed, long budgetTicks) {
+        this.harness = harness;
+        this.id = id;
+        this.seed = seed;
+        this.budgetTicks = budgetTicks;
+        this.random = new SplittableRandom(seed);
+        this.reminders = new ReminderTick(machine, notifications, new Values(), new Random(seed));
+
+        notifications.addSink(n -> {
+            delivered++;
+            if (n.kind() == ReminderNotification.Kind.RULE) rulesFired++;
+            if (n.sound() != null && InsomniaReminderClient.CONFIG.volume > 0f) soundsPlayed++;
+        });
+        notifications.addSink(n -> {
+            ConfigSnapshot cfg = InsomniaReminderClient.CONFIG;
+            if (n.message() != null && (cfg.showsChat || cfg.showsScreen)) textChars += n.message().length();
+        });
+    }
+
+    @Override
+    public void run() {
+        int visit = 0;
+        long worldStart = 0;
+        while (ticks < budgetTicks && !harness.stopped()) {
+            // Title screen, server list, loading screen.
+            int menu = 1 + random.nextInt(MAX_MENU_TICKS);
+            for (int i = 0; i < menu && ticks < budgetTicks; i++) tick(false);
+
+            long stay = Math.min(budgetTicks - ticks, MIN_VISIT_TICKS + random.nextInt(MAX_VISIT_TICKS - MIN_VISIT_TICKS));
+            if (stay <= 0) break;
+            // Each world joined is further along than the last one: time seen before must not carry over.
+            worldStart += (1 + random.nextInt(30)) * ReminderScheduler.DAY_TICKS + random.nextInt((int) ReminderScheduler.DAY_TICKS);
+            play(new SyntheticTrace(seed * 31 + visit++, stay, worldStart, 0.7, 2e-5, 1e-4, 5e-5, 2e-5));
+        }
+    }
+
+    private void play(SyntheticTrace trace) {
+        joins++;
+        started = false;
+        // Every visit is a different server, with no gates stored for it yet.
+        machine.restoreGates(-1, -1);
+        while (trace.next() && !harness.stopped()) {
+            if (world == null || world.dimension != trace.dimension()) {
+                if (world != null) {
+                    dimensionChanges++;
+                    harness.released(world);
+                }
+                world = new World(trace.dimension());
+                // A tick or two before the first time packet.
+                for (int i = random.nextInt(3); i > 0; i--) tick(true);
+                world.timeSynced = true;
+                firstStep = true;
+            }
+            observe(trace);
+            tick(true);
+            firstStep = false;
+
+            double r = random.nextDouble();
+            if (r < harness.editChance) {
+                configEdits++;
+                harness.editConfig(random);
+            } else if (r < harness.editChance + harness.reloadChance) {
+                configReloads++;
+                harness.reloadConfig();
+            }
+        }
+        // Disconnect: queued reminders and cooldowns are dropped and the next tick forgets the world.
+        reminders.resetCooldowns();
+        notifications.clear();
+        machine.clearPendingEvents();
+        harness.released(world);
+        world = null;
+        tick(false);
+    }
+
+    // What ClientObservations does with time and stats packets.
+    private void observe(Trace trace) {
+        long time = trace.worldTime();
+        long age = trace.worldAge();
+        int synced = trace.timeSinceRest();
+        if (started) {
+            long jump = ReminderStateMachine.timeJump(time - lastTime, age - lastAge, true);
+            if (jump > ReminderStateMachine.JUMP_TOLERANCE_TICKS || jump < -ReminderStateMachine.JUMP_TOLERANCE_TICKS) {
+                jumps++;
+                machine.onTimeJumped(time - jump, time, true);
+            }
+            if (synced != lastSynced) {
+                if (synced < knownRest) machine.onRestReset();
+                knownRest = synced;
+            }
+        } else {
+            knownRest = synced;
+            started = true;
+        }
+        lastTime = time;
+        lastAge = age;
+        lastSynced = synced;
+        worldTime = time;
+    }
+
+    /** One client tick, as InsomniaReminderClient.onEndClientTick runs it. */
+    private void tick(boolean inWorld) {
+        long start = System.nanoTime();
+
+        ConfigSnapshot cfg = InsomniaReminderClient.CONFIG;
+        if (cfg != reminders.adopted()) reminders.adopt(cfg);
+        reminders.tick(cfg, inWorld ? this : null);
+
+        long end = System.nanoTime();
+        notifications.dispatch(end);
+        latency.record(System.nanoTime() - start);
+
+        if ((++ticks & YIELD_MASK) == 0) Thread.yield();
+    }
+
+    // ---- ReminderTick.Host: the world stand-in and the trace ----
+
+    @Override
+    public Object world() {
+        return world;
+    }
+
+    @Override
+    public boolean inOverworld() {
+        return world.dimension == Trace.OVERWORLD;
+    }
+
+    @Override
+    public String dimensionId() {
+        return DIMENSION_IDS[world.dimension];
+    }
+
+    @Override
+    public boolean paused() {
+        return false;
+    }
+
+    @Override
+    public boolean timeSynced() {
+        return world.timeSynced;
+    }
+
+    @Override
+    public boolean focused() {
+        return true;
+    }
+
+    @Override
+    public long timeOfDay() {
+        return worldTime;
+    }
+
+    @Override
+    public long worldAge() {
+        return lastAge;
+    }
+
+    @Override
+    public int weather() {
+        return ReminderRules.WEATHER_CLEAR;
+    }
+
+    @Override
+    public int timeSinceRest() {
+        return knownRest;
+    }
+
+    @Override
+    public int[] ruleStatValues() {
+        String[] stats = reminders.adopted().rules.statIds();
+        for (int i = 0; i < stats.length && i < ruleStats.length; i++) {
+            ruleStats[i] = stats[i].endsWith("time_since_rest") ? knownRest : 0;
+        }
+        return ruleStats;
+    }
+
+    @Override
+    public void rested(long time, int rest) {
+        sleeps++;
+        knownRest = 0;
+    }
+
+    @Override
+    public void dayStarted(long time) {
+        days++;
+    }
+
+    @Override
+    public void reminderFired(boolean morning, long time, int rest) {
+        if (firstStep) {
+            int timeOfDay = (int) Math.floorMod(time, ReminderScheduler.DAY_TICKS);
+            boolean due = morning ? ReminderStateMachine.morningDue(timeOfDay, true)
+                    : ReminderStateMachine.nightDue(timeOfDay, rest, true);
+            if (!due) joinMisfires++;
+        }
+        if (morning) {
+            mornings++;
+        } else {
+            nights++;
+        }
+    }
+
+    /**
+     * Run once every session has stopped: one more tick out of any world, which must adopt the
+     * config that was published last. False if it picked up anything else.
+     */
+    boolean finish() {
+        tick(false);
+        return reminders.adopted() == InsomniaReminderClient.CONFIG;
+    }
+
+    private final class Values implements MessageTemplate.Values {
+        @Override
+        public String playerName() {
+            return "Player" + id;
+        }
+
+        @Override
+        public long worldTime() {
+            return worldTime;
+        }
+
+        @Override
+        public int timeSinceRest() {
+            return knownRest;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package net.nullstorm.insomnia_reminder;
+
+import java.util.SplittableRandom;
+
+/**
+ * Generated client trace: normal play with nights slept away (time skips to the next morning),
+ * {@code /time set} and {@code /time add} jumps, lag catch-up spikes, client stalls, a slow server
+ * (the client runs ahead and is corrected back by a few ticks) and trips to the Nether or End.
+ * TIME_SINCE_REST is only synced every {@link #STAT_SYNC_INTERVAL} ticks, like a real client
+ * that learns about sleeping from a later stats packet. Same seed, same trace.
+ */
+final class SyntheticTrace implements Trace {
+
+    private static final long DAY_TICKS = ReminderScheduler.DAY_TICKS;
+
+    // Beds can be used from this time of day on.
+    private static final int BED_TICK = 12542;
+
+    static final int STAT_SYNC_INTERVAL = 1200;
+
+    private final SplittableRandom random;
+    private final double sleepChance;   // per night
+    private final double timeSetChance; // per tick
+    private final double lagChance;     // per tick
+    private final double slowChance;    // per tick, starts a slow-server period
+    private final double travelChance;  // per overworld tick
+
+    private long remaining;
+    private long time;
+    private long age = 1000;
+    // Slow server: ticks left in the period and the server's pace (client ticks per server tick).
+    private int slowTicks;
+    private int slowPace;
+    private int ahead;
+    private int rest;
+    private int synced;
+    private int syncIn = STAT_SYNC_INTERVAL;
+    private byte dimension = OVERWORLD;
+    private int awayTicks;
+
+    // Time of day at which the player goes to bed tonight, -1 == stays up.
+    private long plannedDay = Long.MIN_VALUE;
+    private int sleepAt = -1;
+
+    SyntheticTrace(long seed, long ticks) {
+        this(seed, ticks, 0.7, 1e-6, 1e-4, 2e-5, 2e-5);
+    }
+
+    SyntheticTrace(long seed, long ticks, double sleepChance, double timeSetChance, double lagChance,
+                   double travelChance, double slowChance) {
+        this(seed, ticks, 1000, sleepChance, timeSetChance, lagChance, travelChance, slowChance);
+    }
+
+    /** A trace whose world time starts at {@code startTime}, e.g. a world joined after leaving another. */
+    SyntheticTrace(long seed, long ticks, long startTime, double sleepChance, double timeSetChance, double lagChance,
+                   double travelChance, double slowChance) {
+        this.random = new SplittableRandom(seed);
+        this.time = startTime;
+        this.remaining = ticks;
+        this.sleepChance = sleepChance;
+        this.timeSetChance = timeSetChance;
+        this.lagChance = lagChance;
+        this.travelChance = travelChance;
+        this.slowChance = slowChance;
+    }
+
+    @Override
+    public boolean next() {
+        if (remaining-- <= 0) return false;
+
+        long day = Math.floorDiv(time, DAY_TICKS);
+        int timeOfDay = (int) Math.floorMod(time, DAY_TICKS);
+        if (day != plannedDay) {
+            plannedDay = day;
+            sleepAt = random.nextDouble() < sleepChance ? BED_TICK + random.nextInt(10000) : -1;
+        }
+
+        if (dimension == OVERWORLD && sleepAt >= 0 && timeOfDay >= sleepAt) {
+            // Night skipped: the client sees the next morning a few ticks late.
+            time = (day + 1) * DAY_TICKS + random.nextInt(4);
+            age++;
+            rest = 0;
+            sleepAt = -1;
+        } else {
+            double r = random.nextDouble();
+            if (slowTicks > 0) {
+                // The client predicts one tick per frame tick; every time packet (once a second of
+                // server time) pulls time and age back by however far it ran ahead.
+                slowTicks--;
+                time++;
+                age++;
+                rest++;
+                if (++ahead >= 20 * slowPace) {
+                    int back = ahead - 20;
+                    time -= back;
+                    age -= back;
+                    rest -= back;
+                    ahead = 0;
+                }
+            } else if (r < timeSetChance) {
+                // /time set (absolute, usually backwards) or /time add
+                time = random.nextBoolean() ? random.nextInt((int) DAY_TICKS) : time + random.nextInt((int) DAY_TICKS);
+                age++;
+                rest++;
+            } else if (r < timeSetChance + lagChance) {
+                // Server caught up after a lag spike or the client stalled (world load, GC);
+                // some of these step over a whole trigger window.
+                int behind = random.nextInt(8) == 0 ? 400 + random.nextInt(6000) : 2 + random.nextInt(400);
+                time += behind;
+                age += behind;
+                rest += behind;
+            } else if (r < timeSetChance + lagChance + slowChance) {
+                slowTicks = 200 + random.nextInt(4000);
+                slowPace = 2 + random.nextInt(4);
+                ahead = 0;
+            } else {
+                time++;
+                age++;
+                rest++;
+            }
+        }
+
+        if (--syncIn <= 0) {
+            synced = rest;
+            syncIn = STAT_SYNC_INTERVAL;
+        }
+
+        if (awayTicks > 0) {
+            if (--awayTicks == 0) dimension = OVERWORLD;
+        } else if (random.nextDouble() < travelChance) {
+            dimension = random.nextBoolean() ? NETHER : END;
+            awayTicks = 200 + random.nextInt(6000);
+        }
+        return true;
+    }
+
+    @Override
+    public long worldTime() {
+        return time;
+    }
+
+    @Override
+    public long worldAge() {
+        return age;
+    }
+
+    @Override
+    public int timeSinceRest() {
+        return synced;
+    }
+
+    @Override
+    public byte dimension() {
+        return dimension;
+    }
+}
@@ -0,0 +1,34 @@
+package net.nullstorm.insomnia_reminder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Word wrapping of long messages at several scaled widths, using HeadlessFont for measurement:
+ * the raw wrap and a warm TextLayoutCache lookup (what the overlay pays per new reminder).
+ */
+@State(Scope.Thread)
+public class TextLayoutBenchmark {
+
+    private static final String LONG_MESSAGE =
+            "Good night! The monsters have clocked in for their shift, the phantoms are sharpening their teeth, "
+                    + "and the villagers are already judging you for staying up this late. Beds are safer than bravery, "
+                    + "so please find one before the sky fills with things that want to bite you. ☀️🌙";
+
+    @Param({"180", "320", "640"})
+    public int maxWidthPx;
+
+    private final TextLayoutCache cache = new TextLayoutCache(512);
+
+    @Benchmark
+    public String[] wrapToWidth() {
+        return TextLayoutCache.wrapToWidth(HeadlessFont::width, LONG_MESSAGE, maxWidthPx);
+    }
+
+    @Benchmark
+    public TextLayoutCache.Layout cachedLayout() {
+        return cache.layout(HeadlessFont::width, LONG_MESSAGE, maxWidthPx);
+    }
+}
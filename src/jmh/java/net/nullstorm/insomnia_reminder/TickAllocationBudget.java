@@ -0,0 +1,281 @@
+package net.nullstorm.insomnia_reminder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Allocation budget for the client tick, as measured by ThreadMXBean's per-thread allocated bytes.
+ * Each tick is what {@code InsomniaReminderClient.onEndClientTick} runs: {@link ReminderTick#tick}
+ * against a stub {@link ReminderTick.Host} (state machine, rules, message draw and render,
+ * notification queueing), metrics recording, {@link NotificationDispatcher#dispatch} to a counting
+ * sink and {@link GateStore#writeBehindIfDue}, with the gate store and sleep journal in a temp dir.
+ * Each scenario runs for several simulated game days and fails if it allocated more than the budget
+ * over all of its ticks:
+ * <ul>
+ *     <li>steady play, one tick at a time;</li>
+ *     <li>sleeping through every night (a time jump from night to the next morning);</li>
+ *     <li>TIME_SINCE_REST being reset by the server every few minutes;</li>
+ *     <li>both reminders and a rule firing each day.</li>
+ * </ul>
+ * A tick where nothing happens must not allocate. Events (a reminder or rule firing, a sleep, a new
+ * day) get {@link #BUDGET_BYTES_PER_EVENT} each: the rendered message, the notification, the journal
+ * record and the gate write they cause are allocated once per event by design.
+ * Run with {@code ./gradlew checkTickAllocations} (part of {@code check}).
+ */
+public final class TickAllocationBudget implements ReminderTick.Host {
+
+    private static final int WARMUP_TICKS = 2_000_000;
+    private static final int MEASURED_TICKS = 5_000_000;
+
+    private static final long DAY = ReminderScheduler.DAY_TICKS;
+    private static final int REST_RESET_INTERVAL = 6000;
+    // The dispatcher and gate store run on System.nanoTime(); ticks are simulated at 20 per second.
+    private static final long NANOS_PER_TICK = 50_000_000L;
+
+    // Budget in bytes per tick. Zero: a steady-state tick must not allocate at all.
+    private static final long BUDGET_BYTES_PER_TICK = 0;
+    private static final long BUDGET_BYTES_PER_EVENT = 512;
+
+    private final ReminderStateMachine machine = new ReminderStateMachine();
+    private final NotificationDispatcher notifications = new NotificationDispatcher();
+    private final ReminderTick reminders;
+    private final ConfigSnapshot cfg;
+    private final GateStore gates;
+    private final SleepJournal journal;
+    private final long worldKey = GateStore.key("budget");
+    private final int gateSlot;
+    private final Object world = new Object();
+    private final int[] ruleStats = new int[1];
+    private final long epoch = System.nanoTime();
+
+    private long time = 1000;
+    private long age = 1000;
+    private int rest;
+    private long ticks;
+    private long fired;
+    private long events;
+    private long delivered;
+
+    private TickAllocationBudget(Path dir) {
+        InsomniaReminderConfig config = new InsomniaReminderConfig();
+        config.nightAlwaysPlays = true;
+        config.debugMetrics = true;
+        InsomniaReminderConfig.ReminderRule rule = new InsomniaReminderConfig.ReminderRule();
+        rule.name = "budget";
+        rule.fromTick = 1000;
+        rule.toTick = 2000;
+        rule.stat = "minecraft:time_since_rest";
+        rule.message = "{player}: awake for {days_awake} days at {time}";
+        rule.sound = InsomniaReminderConfig.ReminderRule.RuleSound.WOLF;
+        config.rules.add(rule);
+        cfg = ConfigSnapshot.of(config,
+                MessagePools.compile(config, DefaultMessages.builtIn(DefaultMessages.FALLBACK_LANGUAGE), List.of(), null),
+                ReminderRules.compile(config.rules, id -> true));
+
+        reminders = new ReminderTick(machine, notifications, new Values(), new Random(42));
+        reminders.adopt(cfg);
+        notifications.addSink(n -> {
+            delivered++;
+            if (n.kind() == ReminderNotification.Kind.RULE) events++;
+        });
+        gates = new GateStore(dir);
+        gateSlot = gates.acquire(worldKey);
+        journal = new SleepJournal(dir);
+        journal.start();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (ReminderMetrics.threadAllocatedBytes() < 0) {
+            System.out.println("Per-thread allocation measurement is unavailable on this JVM; skipping.");
+            return;
+        }
+
+        Path dir = Files.createTempDirectory("insomnia-reminder-budget");
+        TickAllocationBudget budget = new TickAllocationBudget(dir);
+        boolean failed = false;
+        failed |= budget.check("steady", budget::steady);
+        failed |= budget.check("sleep jumps", budget::sleepJump);
+        failed |= budget.check("rest resets", budget::restReset);
+        failed |= budget.check("firing", budget::fire);
+        budget.gates.flush();
+        budget.journal.close(1000);
+        if (failed) System.exit(1);
+    }
+
+    private boolean check(String name, Runnable scenario) {
+        // Let the JIT compile (and escape-analyse) the tick before measuring.
+        for (int i = 0; i < WARMUP_TICKS; i++) scenario.run();
+        fired = 0;
+        events = 0;
+        delivered = 0;
+
+        long before = ReminderMetrics.threadAllocatedBytes();
+        for (int i = 0; i < MEASURED_TICKS; i++) scenario.run();
+        long allocated = ReminderMetrics.threadAllocatedBytes() - before;
+
+        // Total, not an integer per-tick average: that would round megabytes down to 0 B/tick.
+        long budget = BUDGET_BYTES_PER_TICK * MEASURED_TICKS + BUDGET_BYTES_PER_EVENT * events;
+        System.out.printf("%s: %d ticks, %d bytes allocated (%.3f B/tick), fired=%d events=%d delivered=%d%n",
+                name, MEASURED_TICKS, allocated, allocated / (double) MEASURED_TICKS, fired, events, delivered);
+        if (allocated > budget) {
+            System.err.printf("Tick allocation budget exceeded in %s: %d bytes > %d bytes%n", name, allocated, budget);
+            return true;
+        }
+        return false;
+    }
+
+    // What onEndClientTick does once the config is adopted.
+    private void tick() {
+        long start = System.nanoTime();
+        long allocStart = ReminderMetrics.threadAllocatedBytes();
+        reminders.tick(cfg, this);
+
+        long end = System.nanoTime();
+        ReminderMetrics.recordTick(end - start);
+        ReminderMetrics.recordTickAllocation(ReminderMetrics.threadAllocatedBytes() - allocStart);
+        long now = epoch + ++ticks * NANOS_PER_TICK;
+        notifications.dispatch(now);
+        gates.writeBehindIfDue(now);
+    }
+
+    private void advance() {
+        time++;
+        age++;
+        rest++;
+    }
+
+    private void steady() {
+        advance();
+        tick();
+    }
+
+    // Plays until late evening, then sleeps: time jumps to the next morning.
+    private void sleepJump() {
+        long timeOfDay = Math.floorMod(time, DAY);
+        if (timeOfDay >= 18000) {
+            long morning = (Math.floorDiv(time, DAY) + 1) * DAY + 10;
+            machine.onTimeJumped(time, morning, true);
+            time = morning;
+            age++;
+        } else {
+            advance();
+        }
+        tick();
+    }
+
+    // Awake for days, with the server resetting TIME_SINCE_REST now and then.
+    private void restReset() {
+        advance();
+        if (rest % REST_RESET_INTERVAL == 0) {
+            rest = 0;
+            machine.onRestReset();
+        }
+        tick();
+    }
+
+    // Never rested: the night reminder and the rule fire every day.
+    private void fire() {
+        advance();
+        rest = Math.max(rest, ReminderStateMachine.PHANTOM_THRESHOLD_TICKS);
+        tick();
+    }
+
+    // ---- ReminderTick.Host ----
+
+    @Override
+    public Object world() {
+        return world;
+    }
+
+    @Override
+    public boolean inOverworld() {
+        return true;
+    }
+
+    @Override
+    public String dimensionId() {
+        return "minecraft:overworld";
+    }
+
+    @Override
+    public boolean paused() {
+        return false;
+    }
+
+    @Override
+    public boolean timeSynced() {
+        return true;
+    }
+
+    @Override
+    public boolean focused() {
+        return true;
+    }
+
+    @Override
+    public long timeOfDay() {
+        return time;
+    }
+
+    @Override
+    public long worldAge() {
+        return age;
+    }
+
+    @Override
+    public int weather() {
+        return ReminderRules.WEATHER_CLEAR;
+    }
+
+    @Override
+    public int timeSinceRest() {
+        return rest;
+    }
+
+    @Override
+    public int[] ruleStatValues() {
+        ruleStats[0] = rest;
+        return ruleStats;
+    }
+
+    @Override
+    public void rested(long time, int rest) {
+        events++;
+        journal.record(SleepStats.SLEPT, worldKey, time, rest);
+        this.rest = 0;
+    }
+
+    @Override
+    public void dayStarted(long time) {
+        events++;
+        journal.record(SleepStats.DAY_STARTED, worldKey, time, rest);
+    }
+
+    @Override
+    public void reminderFired(boolean morning, long time, int rest) {
+        fired++;
+        events++;
+        if (!morning) journal.record(SleepStats.NIGHT_REMINDER, worldKey, time, rest);
+        gates.update(gateSlot, machine.lastDayPlayedAM(), machine.lastDayPlayedPM());
+    }
+
+    private final class Values implements MessageTemplate.Values {
+        @Override
+        public String playerName() {
+            return "Player";
+        }
+
+        @Override
+        public long worldTime() {
+            return time;
+        }
+
+        @Override
+        public int timeSinceRest() {
+            return rest;
+        }
+    }
+}
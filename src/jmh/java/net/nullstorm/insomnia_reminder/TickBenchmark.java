@@ -0,0 +1,45 @@
+package net.nullstorm.insomnia_reminder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Trigger evaluation per client tick, driven by a synthetic world clock instead of a ClientWorld.
+ * See {@link ReplayBenchmark} for throughput over realistic traces.
+ */
+@State(Scope.Thread)
+public class TickBenchmark {
+
+    private ReminderStateMachine reminder;
+    private long time;
+    private long day;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        reminder = new ReminderStateMachine();
+        reminder.configure(true, true, true);
+        time = 1000;
+        day = 0;
+    }
+
+    /** One tick of normal play: world time advances by one, through every window over the run. */
+    @Benchmark
+    public int steadyState() {
+        return reminder.step(time++, 0, true);
+    }
+
+    /** A night tick, then the player sleeps and time jumps to the next morning. */
+    @Benchmark
+    public int sleepJumps() {
+        long night = day * 24000L + 18000L;
+        long morning = (day + 1) * 24000L + 10L;
+        day++;
+
+        int fired = reminder.step(night, 0, true);
+        reminder.onTimeJumped(night, morning, true);
+        return fired | reminder.step(morning, 0, true);
+    }
+}
@@ -0,0 +1,24 @@
+package net.nullstorm.insomnia_reminder;
+
+/**
+ * A stream of per-tick client samples: absolute world time (time of day), world age, the last
+ * synced TIME_SINCE_REST value and the dimension the player is in. Values are only valid after {@link #next()} returned true.
+ */
+interface Trace {
+
+    byte OVERWORLD = 0;
+    byte NETHER = 1;
+    byte END = 2;
+
+    /** Advances to the next sample; false once the trace is exhausted. */
+    boolean next();
+
+    long worldTime();
+
+    /** Ticks the world has actually run; unlike {@link #worldTime()} never moved by sleeping or /time. */
+    long worldAge();
+
+    int timeSinceRest();
+
+    byte dimension();
+}
@@ -0,0 +1,85 @@
+package net.nullstorm.insomnia_reminder;
+
+import java.util.Arrays;
+
+/**
+ * A trace held in primitive arrays, so replay throughput can be measured without the cost of
+ * generating or reading the samples. {@link #rewind()} replays it from the start.
+ */
+final class TraceBuffer implements Trace {
+
+    private final long[] times;
+    private final long[] ages;
+    private final int[] rests;
+    private final byte[] dimensions;
+    private final int size;
+    private int pos = -1;
+
+    private TraceBuffer(long[] times, long[] ages, int[] rests, byte[] dimensions, int size) {
+        this.times = times;
+        this.ages = ages;
+        this.rests = rests;
+        this.dimensions = dimensions;
+        this.size = size;
+    }
+
+    /** Copies up to {@code max} samples of {@code source} into memory. */
+    static TraceBuffer capture(Trace source, int max) {
+        int cap = Math.min(max, 1 << 16);
+        long[] times = new long[cap];
+        long[] ages = new long[cap];
+        int[] rests = new int[cap];
+        byte[] dimensions = new byte[cap];
+        int n = 0;
+        while (n < max && source.next()) {
+            if (n == cap) {
+                cap = (int) Math.min(max, cap * 2L);
+                times = Arrays.copyOf(times, cap);
+                ages = Arrays.copyOf(ages, cap);
+                rests = Arrays.copyOf(rests, cap);
+                dimensions = Arrays.copyOf(dimensions, cap);
+            }
+            times[n] = source.worldTime();
+            ages[n] = source.worldAge();
+            rests[n] = source.timeSinceRest();
+            dimensions[n] = source.dimension();
+            n++;
+        }
+        return new TraceBuffer(times, ages, rests, dimensions, n);
+    }
+
+    int size() {
+        return size;
+    }
+
+    void rewind() {
+        pos = -1;
+    }
+
+    @Override
+    public boolean next() {
+        if (pos + 1 >= size) return false;
+        pos++;
+        return true;
+    }
+
+    @Override
+    public long worldTime() {
+        return times[pos];
+    }
+
+    @Override
+    public long worldAge() {
+        return ages[pos];
+    }
+
+    @Override
+    public int timeSinceRest() {
+        return rests[pos];
+    }
+
+    @Override
+    public byte dimension() {
+        return dimensions[pos];
+    }
+}
@@ -0,0 +1,109 @@
+package net.nullstorm.insomnia_reminder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Binary trace files: a header ({@code "IRTR"}, version) followed by fixed-size big-endian records
+ * of {@code long worldTime, long worldAge, int timeSinceRest, byte dimension}. Streamed, never loaded whole.
+ * Version 1 files (no world age) are still read; their age is taken to advance one tick per record.
+ */
+final class TraceFile {
+
+    private static final int MAGIC = 0x49525452; // "IRTR"
+    private static final int VERSION = 2;
+
+    private TraceFile() {
+    }
+
+    /** Writes every remaining sample of {@code trace}; returns the number of records. */
+    static long write(Trace trace, Path path) throws IOException {
+        long n = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            while (trace.next()) {
+                out.writeLong(trace.worldTime());
+                out.writeLong(trace.worldAge());
+                out.writeInt(trace.timeSinceRest());
+                out.writeByte(trace.dimension());
+                n++;
+            }
+        }
+        return n;
+    }
+
+    static Reader open(Path path) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024));
+        try {
+            if (in.readInt() != MAGIC) throw new IOException("Not a trace file: " + path);
+            int version = in.readInt();
+            if (version != 1 && version != VERSION) throw new IOException("Unsupported trace version " + version + ": " + path);
+            return new Reader(in, version);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    static final class Reader implements Trace, AutoCloseable {
+        private final DataInputStream in;
+        private final int version;
+        private long worldTime;
+        private long worldAge = -1;
+        private int timeSinceRest;
+        private byte dimension;
+
+        private Reader(DataInputStream in, int version) {
+            this.in = in;
+            this.version = version;
+        }
+
+        @Override
+        public boolean next() {
+            try {
+                worldTime = in.readLong();
+                worldAge = version >= 2 ? in.readLong() : worldAge + 1;
+                timeSinceRest = in.readInt();
+                dimension = in.readByte();
+                return true;
+            } catch (EOFException e) {
+                return false;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public long worldTime() {
+            return worldTime;
+        }
+
+        @Override
+        public long worldAge() {
+            return worldAge;
+        }
+
+        @Override
+        public int timeSinceRest() {
+            return timeSinceRest;
+        }
+
+        @Override
+        public byte dimension() {
+            return dimension;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
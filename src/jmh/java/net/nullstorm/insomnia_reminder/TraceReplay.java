@@ -0,0 +1,276 @@
+package net.nullstorm.insomnia_reminder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Streams traces through {@link ReminderStateMachine} the way the client does: world time jumps
+ * (classified against world age, see {@link ReminderStateMachine#timeJump}) and stat resets are
+ * turned into the same events {@link ClientObservations} raises, and a detected sleep zeroes the
+ * known TIME_SINCE_REST until the next sync.
+ * <p>
+ * With checking on, every tick is also evaluated by a second machine whose plan is dropped each
+ * tick (no fast path), and the results must match. On top of that:
+ * <ul>
+ *     <li>each reminder fires at most once per day, unless time jumped backwards in between;</li>
+ *     <li>while time flows (lag, stalls and corrections included) the morning reminder fires on the
+ *     tick that passes 06:00;</li>
+ *     <li>the night reminder only fires past the phantom threshold (unless it always plays);</li>
+ *     <li>waking up from a skipped night fires the morning reminder on that tick;</li>
+ *     <li>right after joining a world, a reminder only fires inside its window: time seen in the
+ *     world left behind doesn't count.</li>
+ * </ul>
+ * Besides the synthetic trace, a second run leaves and joins worlds whose clocks are days ahead
+ * of the one left.
+ * Run with {@code ./gradlew replayTraces}; pass {@code -PreplayArgs="..."} for options:
+ * {@code --ticks N}, {@code --seed S}, {@code --always-night}, {@code --write out.trace},
+ * or trace file paths to replay recorded traces instead of a synthetic one.
+ */
+public final class TraceReplay {
+
+    private static final long DEFAULT_TICKS = 50_000_000L;
+    private static final int MAX_REPORTED = 10;
+
+    private final ReminderStateMachine machine = new ReminderStateMachine();
+    private final ReminderStateMachine reference; // null == unchecked
+    private final boolean nightAlwaysPlays;
+
+    // Client-side view, as ClientObservations would hold it.
+    private boolean started;
+    private long lastTime;
+    private long lastAge;
+    private int lastSynced;
+    private int knownRest;
+    private long lastOverworldTime = -1; // -1 == continuity broken (jump, other dimension)
+    private boolean backwardsSinceCheck;
+    private boolean joined;
+
+    // Checker state
+    private long morningDay = Long.MIN_VALUE;
+    private long nightDay = Long.MIN_VALUE;
+    final List<String> violations = new ArrayList<>();
+    long violationCount;
+
+    long ticks;
+    long mornings;
+    long nights;
+    long jumps;
+    long restResets;
+    long wakes;
+    long rejoins;
+
+    TraceReplay(boolean nightAlwaysPlays, boolean check) {
+        this.nightAlwaysPlays = nightAlwaysPlays;
+        machine.configure(true, true, nightAlwaysPlays);
+        if (check) {
+            reference = new ReminderStateMachine();
+            reference.configure(true, true, nightAlwaysPlays);
+        } else {
+            reference = null;
+        }
+    }
+
+    /**
+     * Leaves the world and joins a new one with no stored gates, as the client does on disconnect
+     * and join; the next trace is played in that world.
+     */
+    void rejoin() {
+        rejoins++;
+        rejoin(machine);
+        if (reference != null) rejoin(reference);
+        started = false;
+        lastOverworldTime = -1;
+        morningDay = Long.MIN_VALUE;
+        nightDay = Long.MIN_VALUE;
+        joined = true;
+    }
+
+    private static void rejoin(ReminderStateMachine m) {
+        m.clearPendingEvents();
+        m.restoreGates(-1, -1);
+        m.onWorldChanged();
+    }
+
+    /** Replays every remaining sample of {@code trace}. */
+    void replay(Trace trace) {
+        while (trace.next()) {
+            long time = trace.worldTime();
+            long age = trace.worldAge();
+            int synced = trace.timeSinceRest();
+            boolean overworld = trace.dimension() == Trace.OVERWORLD;
+
+            boolean jumped = false;
+            long jumpFrom = 0;
+            if (started) {
+                long jump = ReminderStateMachine.timeJump(time - lastTime, age - lastAge, true);
+                if (jump > ReminderStateMachine.JUMP_TOLERANCE_TICKS || jump < -ReminderStateMachine.JUMP_TOLERANCE_TICKS) {
+                    jumped = true;
+                    jumpFrom = time - jump;
+                    jumps++;
+                    machine.onTimeJumped(jumpFrom, time, true);
+                    if (reference != null) reference.onTimeJumped(jumpFrom, time, true);
+                }
+                // A changed value means a stats packet arrived.
+                if (synced != lastSynced) {
+                    if (synced < knownRest) {
+                        restResets++;
+                        machine.onRestReset();
+                        if (reference != null) reference.onRestReset();
+                    }
+                    knownRest = synced;
+                }
+            } else {
+                knownRest = synced;
+                started = true;
+            }
+            lastTime = time;
+            lastAge = age;
+            lastSynced = synced;
+
+            int rest = knownRest;
+            int result = machine.step(time, rest, overworld);
+            if ((result & ReminderStateMachine.RESTED) != 0) knownRest = 0;
+            if ((result & ReminderStateMachine.FIRED_MORNING) != 0) mornings++;
+            if ((result & ReminderStateMachine.FIRED_NIGHT) != 0) nights++;
+
+            if (reference != null) {
+                reference.invalidatePlan();
+                int expected = reference.step(time, rest, overworld);
+                if (result != expected) {
+                    violation(time, "fast path returned " + result + ", full evaluation " + expected);
+                }
+                if (jumped) {
+                    lastOverworldTime = -1;
+                    backwardsSinceCheck |= jumpFrom > time;
+                }
+                if (overworld) check(time, result, rest, jumped, jumpFrom);
+                else lastOverworldTime = -1;
+            }
+            joined = false;
+            ticks++;
+        }
+    }
+
+    private void check(long time, int result, int rest, boolean jumped, long jumpFrom) {
+        long day = Math.floorDiv(time, ReminderScheduler.DAY_TICKS);
+        int timeOfDay = (int) Math.floorMod(time, ReminderScheduler.DAY_TICKS);
+
+        if (backwardsSinceCheck) {
+            morningDay = Long.MIN_VALUE;
+            nightDay = Long.MIN_VALUE;
+            backwardsSinceCheck = false;
+        }
+        boolean crossedMorning = lastOverworldTime != -1
+                && ReminderStateMachine.lastOccurrence(time, ReminderStateMachine.AM_TICK) > lastOverworldTime;
+        lastOverworldTime = time;
+
+        boolean wokeUp = jumped && jumpFrom < time
+                && Math.floorMod(jumpFrom, ReminderScheduler.DAY_TICKS) >= 12000
+                && timeOfDay <= ReminderStateMachine.AM_TICK + ReminderStateMachine.SLEEP_WAKE_GRACE_TICKS;
+        if (wokeUp) wakes++;
+
+        if (joined) {
+            if ((result & ReminderStateMachine.FIRED_MORNING) != 0 && !ReminderStateMachine.morningDue(timeOfDay, false)) {
+                violation(time, "morning reminder on joining at time of day " + timeOfDay);
+            }
+            if ((result & ReminderStateMachine.FIRED_NIGHT) != 0 && !ReminderStateMachine.nightDue(timeOfDay, rest, true)) {
+                violation(time, "night reminder on joining at time of day " + timeOfDay);
+            }
+        }
+
+        if ((result & ReminderStateMachine.FIRED_MORNING) != 0) {
+            if (morningDay == day) violation(time, "second morning reminder on day " + day);
+            morningDay = day;
+        } else if (wokeUp && morningDay != day) {
+            violation(time, "woke up on day " + day + " without a morning reminder");
+        } else if (crossedMorning && morningDay != day) {
+            violation(time, "passed 06:00 of day " + day + " without a morning reminder");
+        }
+
+        if ((result & ReminderStateMachine.FIRED_NIGHT) != 0) {
+            if (nightDay == day) violation(time, "second night reminder on day " + day);
+            nightDay = day;
+            int effective = (result & ReminderStateMachine.RESTED) != 0 ? 0 : rest;
+            if (!nightAlwaysPlays && effective < ReminderStateMachine.PHANTOM_THRESHOLD_TICKS) {
+                violation(time, "night reminder with TIME_SINCE_REST " + effective);
+            }
+        }
+    }
+
+    private void violation(long time, String what) {
+        violationCount++;
+        if (violations.size() < MAX_REPORTED) violations.add("t=" + time + ": " + what);
+    }
+
+    public static void main(String[] args) throws IOException {
+        long ticks = DEFAULT_TICKS;
+        long seed = 42;
+        boolean alwaysNight = false;
+        Path writeTo = null;
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--ticks" -> ticks = Long.parseLong(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--always-night" -> alwaysNight = true;
+                case "--write" -> writeTo = Path.of(args[++i]);
+                default -> files.add(Path.of(args[i]));
+            }
+        }
+
+        if (writeTo != null) {
+            long n = TraceFile.write(new SyntheticTrace(seed, ticks), writeTo);
+            System.out.printf("Wrote %d samples to %s%n", n, writeTo);
+            return;
+        }
+
+        boolean failed = false;
+        if (files.isEmpty()) {
+            failed = run("synthetic seed=" + seed, new SyntheticTrace(seed, ticks), alwaysNight);
+            failed |= runRejoins(seed, ticks / 10, alwaysNight);
+        } else {
+            for (Path file : files) {
+                try (TraceFile.Reader trace = TraceFile.open(file)) {
+                    failed |= run(file.toString(), trace, alwaysNight);
+                }
+            }
+        }
+        if (failed) System.exit(1);
+    }
+
+    private static boolean run(String name, Trace trace, boolean alwaysNight) {
+        TraceReplay replay = new TraceReplay(alwaysNight, true);
+        long start = System.nanoTime();
+        replay.replay(trace);
+        return report(name, replay, (System.nanoTime() - start) / 1e9);
+    }
+
+    // Short visits, each to a world whose clock is 1 to 30 days ahead of the one left.
+    private static boolean runRejoins(long seed, long ticks, boolean alwaysNight) {
+        TraceReplay replay = new TraceReplay(alwaysNight, true);
+        SplittableRandom random = new SplittableRandom(seed);
+        long worldStart = 0;
+        long start = System.nanoTime();
+        for (int visit = 0; replay.ticks < ticks; visit++) {
+            worldStart += (1 + random.nextInt(30)) * ReminderScheduler.DAY_TICKS + random.nextInt((int) ReminderScheduler.DAY_TICKS);
+            replay.rejoin();
+            replay.replay(new SyntheticTrace(seed * 31 + visit, 1_000 + random.nextInt(60_000), worldStart,
+                    0.7, 1e-6, 1e-4, 2e-5, 2e-5));
+        }
+        return report("rejoins seed=" + seed, replay, (System.nanoTime() - start) / 1e9);
+    }
+
+    private static boolean report(String name, TraceReplay replay, double seconds) {
+        System.out.printf("%s: %d ticks (%.1f days) in %.2f s, %.1f M ticks/s checked%n",
+                name, replay.ticks, replay.ticks / (double) ReminderScheduler.DAY_TICKS, seconds,
+                replay.ticks / seconds / 1e6);
+        System.out.printf("  mornings=%d nights=%d wakes=%d jumps=%d restResets=%d rejoins=%d violations=%d%n",
+                replay.mornings, replay.nights, replay.wakes, replay.jumps, replay.restResets, replay.rejoins,
+                replay.violationCount);
+        for (String v : replay.violations) System.out.println("  " + v);
+        return replay.violationCount > 0;
+    }
+}
@@ -0,0 +1,159 @@
+package net.nullstorm.insomnia_reminder;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import net.minecraft.stat.Stat;
+import net.minecraft.stat.Stats;
+import net.minecraft.util.Identifier;
+
+import java.util.Arrays;
+
+/**
+ * World time and TIME_SINCE_REST as observed from incoming packets.
+ * Fed by ClientPlayNetworkHandlerMixin and the {@link SleepEventPayload} receiver on the client thread;
+ * turns raw packet values into typed {@link InsomniaReminderEvents} so the tick never polls the stat handler.
+ * <p>
+ * Without the server companion, sleeping is inferred from big world time jumps and TIME_SINCE_REST drops,
+ * which lag and late stat syncs can fool. Once the server says HELLO, only its exact events count.
+ */
+public final class ClientObservations {
+
+    // Resolved on the first stats packet so this class stays usable without a bootstrapped registry.
+    private static Stat<Identifier> timeSinceRestStat;
+
+    // Last synced value; 0 until the server sends one (same as an empty stat handler).
+    private static int timeSinceRest = 0;
+    private static boolean restKnown = false;
+
+    // Statistics referenced by reminder rules and their last synced values; TIME_SINCE_REST is
+    // served from timeSinceRest so rules see detected sleeps too.
+    private static Stat<?>[] ruleStats = new Stat<?>[0];
+    private static int[] ruleStatValues = new int[0];
+    private static int ruleRestIndex = -1;
+
+    // The server sends SleepEventPayloads; heuristics are off until disconnect.
+    private static boolean serverEvents = false;
+
+    private static final TickRateEstimator TICK_RATE = new TickRateEstimator();
+
+    // The world whose time the last world time packet set; a new world reads 0 until its first one.
+    private static Object timeSyncedWorld;
+
+    private ClientObservations() {
+    }
+
+    static int timeSinceRest() {
+        return timeSinceRest;
+    }
+
+    /** True once a world time packet was applied to {@code world}. */
+    static boolean timeSynced(Object world) {
+        return world != null && world == timeSyncedWorld;
+    }
+
+    /**
+     * Called after a world time packet was applied to {@code world}. {@code before*} are the client's
+     * own world age and time of day just before it ({@code Long.MIN_VALUE} if there was no world).
+     * <p>
+     * The client predicts both values one tick at a time and a packet corrects both by the same amount,
+     * so lag, stalls and a slow server never look like a jump; only a time of day change that the world
+     * age doesn't account for does (night skipped, /time set).
+     */
+    public static void onWorldTime(Object world, long beforeAge, long beforeTime, long afterAge, long afterTime, boolean daylightCycle) {
+        TICK_RATE.update(afterAge, System.nanoTime());
+        ReminderMetrics.serverTps(TICK_RATE.tps());
+        // A new world's first packet: it had no time of its own to jump from.
+        boolean first = world != timeSyncedWorld;
+        timeSyncedWorld = world;
+        if (beforeTime == Long.MIN_VALUE || first) return;
+
+        long jump = ReminderStateMachine.timeJump(afterTime - beforeTime, afterAge - beforeAge, daylightCycle);
+        if (jump > ReminderStateMachine.JUMP_TOLERANCE_TICKS || jump < -ReminderStateMachine.JUMP_TOLERANCE_TICKS) {
+            InsomniaReminderEvents.TIME_JUMPED.invoker().onTimeJumped(afterTime - jump, afterTime);
+        }
+    }
+
+    /** True once the server companion said HELLO: sleep is reported, not inferred. */
+    static boolean serverEvents() {
+        return serverEvents;
+    }
+
+    /** Starts tracking the statistics reminder rules reference (client thread, e.g. on config change). */
+    static void trackRuleStats(Stat<?>[] stats) {
+        if (timeSinceRestStat == null) timeSinceRestStat = Stats.CUSTOM.getOrCreateStat(Stats.TIME_SINCE_REST);
+        ruleStats = stats;
+        ruleStatValues = new int[stats.length];
+        ruleRestIndex = -1;
+        for (int i = 0; i < stats.length; i++) {
+            if (stats[i] == timeSinceRestStat) ruleRestIndex = i;
+        }
+    }
+
+    /** Last synced values of the tracked rule statistics, in {@link #trackRuleStats} order. */
+    static int[] ruleStatValues() {
+        if (ruleRestIndex >= 0) ruleStatValues[ruleRestIndex] = timeSinceRest;
+        return ruleStatValues;
+    }
+
+    /** Called after a statistics packet was applied. Packets only carry stats that changed. */
+    public static void onStatistics(Object2IntMap<Stat<?>> stats) {
+        if (timeSinceRestStat == null) timeSinceRestStat = Stats.CUSTOM.getOrCreateStat(Stats.TIME_SINCE_REST);
+        Stat<?>[] tracked = ruleStats;
+        for (int i = 0; i < tracked.length; i++) {
+            if (stats.containsKey(tracked[i])) ruleStatValues[i] = stats.getInt(tracked[i]);
+        }
+        if (!stats.containsKey(timeSinceRestStat)) return;
+        int value = stats.getInt(timeSinceRestStat);
+        int previous = timeSinceRest;
+        boolean wasKnown = restKnown;
+
+        timeSinceRest = value;
+        restKnown = true;
+
+        InsomniaReminderEvents.STATS_SYNCED.invoker().onStatsSynced(value);
+        if (wasKnown && value < previous && !serverEvents) {
+            InsomniaReminderEvents.REST_RESET.invoker().onRestReset(previous, value);
+        }
+    }
+
+    /** Called for every sleep event the server companion sends. */
+    static void onSleepEvent(SleepEventPayload event) {
+        switch (event.type()) {
+            case SleepEventPayload.HELLO -> {
+                serverEvents = true;
+                setRest((int) event.value());
+            }
+            case SleepEventPayload.WOKE -> {
+                int previous = timeSinceRest;
+                setRest(0);
+                InsomniaReminderEvents.REST_RESET.invoker().onRestReset(previous, 0);
+            }
+            case SleepEventPayload.NIGHT_SKIPPED ->
+                    InsomniaReminderEvents.NIGHT_SKIPPED.invoker().onNightSkipped(event.worldTime(), event.value());
+            case SleepEventPayload.PHANTOM_THRESHOLD -> setRest((int) event.value());
+            default -> {
+            }
+        }
+    }
+
+    private static void setRest(int value) {
+        timeSinceRest = value;
+        restKnown = true;
+        InsomniaReminderEvents.STATS_SYNCED.invoker().onStatsSynced(value);
+    }
+
+    /** The tick saw a sleep before the server synced stats; treat the player as rested. */
+    static void markRested() {
+        timeSinceRest = 0;
+    }
+
+    /** Forget everything observed on the previous server. */
+    static void reset() {
+        timeSinceRest = 0;
+        restKnown = false;
+        serverEvents = false;
+        Arrays.fill(ruleStatValues, 0);
+        TICK_RATE.reset();
+        timeSyncedWorld = null;
+        ReminderMetrics.serverTps(TickRateEstimator.NOMINAL_TPS);
+    }
+}
@@ -0,0 +1,48 @@
+package net.nullstorm.insomnia_reminder;
+
+import java.util.function.Function;
+
+/**
+ * Publishes config changes to {@link InsomniaReminderClient#CONFIG}: diffs the new config against
+ * the running snapshot, compiles only the derived state that changed (on the calling thread) and
+ * swaps in the next snapshot, which the client thread adopts at the start of its next tick.
+ * The compilers are passed in, so the same steps run headless in the soak harness.
+ * <p>
+ * Callable from any thread. Synchronized so two publishers can't lose each other's compiled pools
+ * or rules; readers of {@code CONFIG} never lock.
+ */
+final class ConfigPublisher {
+
+    private final Function<InsomniaReminderConfig, MessagePools> poolCompiler;
+    private final Function<InsomniaReminderConfig, ReminderRules> ruleCompiler;
+
+    ConfigPublisher(Function<InsomniaReminderConfig, MessagePools> poolCompiler,
+                    Function<InsomniaReminderConfig, ReminderRules> ruleCompiler) {
+        this.poolCompiler = poolCompiler;
+        this.ruleCompiler = ruleCompiler;
+    }
+
+    /**
+     * Publishes {@code newCfg}; with {@code recompile}, pools and rules are compiled again even if
+     * their settings didn't change. Returns the published snapshot, or null if nothing changed.
+     */
+    synchronized ConfigSnapshot publish(InsomniaReminderConfig newCfg, boolean recompile) {
+        ConfigSnapshot current = InsomniaReminderClient.CONFIG;
+        int changed = recompile ? ~0 : current.changesIn(newCfg);
+        if (changed == 0) return null; // our own save, or a no-op edit
+
+        MessagePools pools = (changed & InsomniaReminderConfig.CHANGED_MESSAGES) != 0 ? poolCompiler.apply(newCfg) : null;
+        ReminderRules rules = (changed & InsomniaReminderConfig.CHANGED_RULES) != 0 ? ruleCompiler.apply(newCfg) : null;
+        ConfigSnapshot next = current.next(newCfg, pools, rules);
+        InsomniaReminderClient.CONFIG = next;
+        return next;
+    }
+
+    /** Recompiles only the pools of the running config, when what they're built from changed. */
+    synchronized ConfigSnapshot recompilePools() {
+        ConfigSnapshot current = InsomniaReminderClient.CONFIG;
+        ConfigSnapshot next = current.withPools(poolCompiler.apply(current.editableCopy()));
+        InsomniaReminderClient.CONFIG = next;
+        return next;
+    }
+}
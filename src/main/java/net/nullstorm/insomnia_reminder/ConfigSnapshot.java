@@ -0,0 +1,86 @@
+package net.nullstorm.insomnia_reminder;
+
+/**
+ * The running config: a validated, immutable view of {@link InsomniaReminderConfig} plus everything
+ * derived from it (clamped volume, resolved display mode, compiled message pools and rules).
+ * Published as a whole through one volatile reference, so a reader sees one consistent config
+ * with nothing left to clamp or null-check, and any thread can build and publish the next one.
+ * <p>
+ * The source config is a private sanitized copy; {@link #editableCopy()} hands out a fresh one.
+ */
+final class ConfigSnapshot {
+
+    static final ConfigSnapshot DEFAULTS =
+            of(new InsomniaReminderConfig(), MessagePools.compile(null), ReminderRules.EMPTY);
+
+    private final InsomniaReminderConfig source;
+
+    final boolean enabled;
+    final boolean morningEnabled;
+    final boolean nightEnabled;
+    final boolean nightAlwaysPlays;
+
+    /** Sound volume, 0-1; 0 == silent. */
+    final float volume;
+
+    final InsomniaReminderConfig.MessageDisplayMode displayMode;
+    final boolean showsChat;
+    final boolean showsScreen;
+    final boolean toastNotifications;
+    final boolean logNotifications;
+
+    /** Chance per reminder of an ultra-rare message, 0-100; 0 when they're turned off. */
+    final int ultraRareChancePercent;
+
+    final boolean watchConfigFile;
+    final boolean serverReminders;
+    final boolean debugMetrics;
+
+    final MessagePools pools;
+    final ReminderRules rules;
+
+    private ConfigSnapshot(InsomniaReminderConfig source, MessagePools pools, ReminderRules rules) {
+        this.source = source;
+        this.enabled = source.enabled;
+        this.morningEnabled = source.morningEnabled;
+        this.nightEnabled = source.nightEnabled;
+        this.nightAlwaysPlays = source.nightAlwaysPlays;
+        this.volume = source.volumePercent / 100f;
+        this.displayMode = source.messageDisplayMode;
+        this.showsChat = displayMode.showsChat();
+        this.showsScreen = displayMode.showsScreen();
+        this.toastNotifications = source.toastNotifications;
+        this.logNotifications = source.logNotifications;
+        this.ultraRareChancePercent = source.ultraRareMessages ? source.ultraRareChancePercent : 0;
+        this.watchConfigFile = source.watchConfigFile;
+        this.serverReminders = source.serverReminders;
+        this.debugMetrics = source.debugMetrics;
+        this.pools = pools;
+        this.rules = rules;
+    }
+
+    /** Snapshots {@code cfg} (copied, then sanitized); later changes to {@code cfg} don't show through. */
+    static ConfigSnapshot of(InsomniaReminderConfig cfg, MessagePools pools, ReminderRules rules) {
+        return new ConfigSnapshot(cfg.sanitizedCopy(), pools, rules);
+    }
+
+    /** The next snapshot; null pools/rules keep this one's (nothing they're compiled from changed). */
+    ConfigSnapshot next(InsomniaReminderConfig cfg, MessagePools pools, ReminderRules rules) {
+        return of(cfg, pools != null ? pools : this.pools, rules != null ? rules : this.rules);
+    }
+
+    /** The same settings with recompiled pools (the built-in messages they're compiled from changed). */
+    ConfigSnapshot withPools(MessagePools pools) {
+        return new ConfigSnapshot(source, pools, rules);
+    }
+
+    /** Which groups of settings (CHANGED_* bits) of {@code cfg} differ from this snapshot. */
+    int changesIn(InsomniaReminderConfig cfg) {
+        return cfg.sanitizedCopy().changesFrom(source);
+    }
+
+    /** A mutable copy of the settings, e.g. for a config screen to edit and then publish. */
+    InsomniaReminderConfig editableCopy() {
+        return source.copy();
+    }
+}
@@ -0,0 +1,137 @@
+package net.nullstorm.insomnia_reminder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches the config directory and reloads insomnia_reminder.json when it changes on disk
+ * (e.g. pushed by a deployment tool while the game is running), and the message pack directory,
+ * if it exists at start, so edited packs are re-indexed.
+ * Runs on a daemon thread: events are coalesced, the file is parsed off-thread, and only a
+ * successfully parsed config is handed to {@code onReload}. A malformed edit is logged and ignored,
+ * so the running config is never dropped. {@code onPacksChanged} also runs on the watcher thread.
+ */
+final class ConfigWatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("insomnia_reminder");
+
+    // Editors and deploy tools often write in several steps; wait for the burst to settle.
+    private static final long SETTLE_MS = 200;
+
+    private static final int CHANGED_CONFIG = 1;
+    private static final int CHANGED_PACKS = 2;
+
+    private final Path configDir;
+    private final String fileName;
+    private final Consumer<InsomniaReminderConfig> onReload;
+    private final Path packDir;
+    private final Runnable onPacksChanged;
+    private WatchService watchService;
+    private WatchKey packKey;
+
+    ConfigWatcher(Path configDir, String fileName, Consumer<InsomniaReminderConfig> onReload,
+                  Path packDir, Runnable onPacksChanged) {
+        this.configDir = configDir;
+        this.fileName = fileName;
+        this.onReload = onReload;
+        this.packDir = packDir;
+        this.onPacksChanged = onPacksChanged;
+    }
+
+    void start() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            configDir.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            if (Files.isDirectory(packDir)) {
+                packKey = packDir.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("[Insomnia Reminder] Config hot-reload unavailable", e);
+            return;
+        }
+
+        Thread t = new Thread(this::run, "Insomnia Reminder config watcher");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    void stop() {
+        try {
+            if (watchService != null) watchService.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                int changed = drain(key);
+
+                // Coalesce: keep swallowing events until the directories have been quiet for SETTLE_MS.
+                WatchKey more;
+                while ((more = watchService.poll(SETTLE_MS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= drain(more);
+                }
+
+                if ((changed & CHANGED_PACKS) != 0) reloadPacks();
+                if ((changed & CHANGED_CONFIG) != 0) reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+            // shutting down
+        }
+    }
+
+    private int drain(WatchKey key) {
+        int changed = 0;
+        for (WatchEvent<?> ev : key.pollEvents()) {
+            if (!(ev.context() instanceof Path p)) continue;
+            String name = p.getFileName().toString();
+            if (key == packKey) {
+                if (name.endsWith(".txt")) changed |= CHANGED_PACKS;
+            } else if (name.equals(fileName)) {
+                changed |= CHANGED_CONFIG;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    private void reloadPacks() {
+        try {
+            onPacksChanged.run();
+        } catch (RuntimeException e) {
+            LOGGER.error("[Insomnia Reminder] Message pack reload failed", e);
+        }
+    }
+
+    private void reload() {
+        InsomniaReminderConfig cfg = InsomniaReminderConfig.tryLoad(configDir);
+        if (cfg == null) {
+            LOGGER.warn("[Insomnia Reminder] Ignoring unreadable or malformed {}; keeping the running config", fileName);
+            return;
+        }
+        try {
+            onReload.accept(cfg);
+        } catch (RuntimeException e) {
+            LOGGER.error("[Insomnia Reminder] Config hot-reload failed", e);
+        }
+    }
+}
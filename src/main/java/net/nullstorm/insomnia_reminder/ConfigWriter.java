@@ -0,0 +1,74 @@
+package net.nullstorm.insomnia_reminder;
+
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background config writer.
+ * Saves are coalesced: a burst of saves within {@link #DEBOUNCE_MS} writes only the last snapshot,
+ * on a single daemon thread, so the client thread never touches the disk for a config save.
+ */
+final class ConfigWriter {
+
+    static final long DEBOUNCE_MS = 250;
+
+    // Held for the whole write so flush() waits for an in-flight write instead of racing it.
+    private static final Object WRITE_LOCK = new Object();
+
+    private static ScheduledExecutorService executor;
+    private static ScheduledFuture<?> scheduled;
+    private static Path pendingDir;
+    private static InsomniaReminderConfig pending;
+
+    private ConfigWriter() {
+    }
+
+    /** Queues {@code snapshot} to be written to {@code configDir}; replaces any not-yet-written snapshot. */
+    static synchronized void submit(Path configDir, InsomniaReminderConfig snapshot) {
+        pendingDir = configDir;
+        pending = snapshot;
+        if (scheduled == null || scheduled.isDone()) {
+            scheduled = executor().schedule(ConfigWriter::writePending, DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Writes any pending snapshot now, on the calling thread (used at shutdown). */
+    static void flush() {
+        ScheduledFuture<?> f;
+        synchronized (ConfigWriter.class) {
+            f = scheduled;
+        }
+        if (f != null) f.cancel(false);
+        writePending();
+    }
+
+    private static void writePending() {
+        synchronized (WRITE_LOCK) {
+            Path dir;
+            InsomniaReminderConfig cfg;
+            synchronized (ConfigWriter.class) {
+                dir = pendingDir;
+                cfg = pending;
+                pendingDir = null;
+                pending = null;
+                // Taken: a save submitted from here on, even during this write, schedules its own.
+                scheduled = null;
+            }
+            if (cfg != null) cfg.save(dir);
+        }
+    }
+
+    private static ScheduledExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "Insomnia Reminder config writer");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return executor;
+    }
+}
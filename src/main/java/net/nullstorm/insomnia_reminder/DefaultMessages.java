@@ -0,0 +1,109 @@
+package net.nullstorm.insomnia_reminder;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The built-in reminder messages of one language, from {@code assets/insomnia_reminder/messages/<language>.json}:
+ * <pre>{ "morning": [...], "night": [...], "ultra_rare_morning": [...], "ultra_rare_night": [...] }</pre>
+ * Resource packs add to the lists; a layer with {@code "replace": true} drops everything below it.
+ * Only the active language is kept (see {@link MessageResources}).
+ *
+ * @param language the language the messages are in (the fallback when the active one has none)
+ * @param hash     64-bit FNV-1a over the raw bytes of every layer, so a reload that finds the same
+ *                 content can keep what was compiled from it instead of parsing again
+ */
+record DefaultMessages(String language, long hash, String[] morning, String[] night,
+                       String[] ultraRareMorning, String[] ultraRareNight) {
+
+    static final String FALLBACK_LANGUAGE = "en_us";
+
+    static final DefaultMessages NONE = new DefaultMessages("", 0, new String[0], new String[0], new String[0], new String[0]);
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("insomnia_reminder");
+
+    /** Resource path, relative to the {@code insomnia_reminder} namespace. */
+    static String path(String language) {
+        return "messages/" + language + ".json";
+    }
+
+    static long hash(String language, List<byte[]> layers) {
+        long h = GateStore.key(language);
+        for (byte[] layer : layers) {
+            for (byte b : layer) {
+                h ^= b & 0xFF;
+                h *= 0x100000001b3L;
+            }
+            // Layer boundary, so moving bytes between layers changes the hash.
+            h ^= 0xFF;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /** Parses the layers, lowest priority first. A malformed layer is skipped. */
+    static DefaultMessages parse(String language, long hash, List<byte[]> layers) {
+        List<String> morning = new ArrayList<>();
+        List<String> night = new ArrayList<>();
+        List<String> ultraRareMorning = new ArrayList<>();
+        List<String> ultraRareNight = new ArrayList<>();
+        for (byte[] layer : layers) {
+            JsonObject json;
+            try {
+                json = JsonParser.parseString(new String(layer, StandardCharsets.UTF_8)).getAsJsonObject();
+            } catch (RuntimeException e) {
+                LOGGER.warn("[Insomnia Reminder] Ignoring malformed {} layer: {}", path(language), e.getMessage());
+                continue;
+            }
+            JsonElement replace = json.get("replace");
+            if (replace != null && replace.isJsonPrimitive() && replace.getAsJsonPrimitive().isBoolean() && replace.getAsBoolean()) {
+                morning.clear();
+                night.clear();
+                ultraRareMorning.clear();
+                ultraRareNight.clear();
+            }
+            addStrings(json, "morning", morning);
+            addStrings(json, "night", night);
+            addStrings(json, "ultra_rare_morning", ultraRareMorning);
+            addStrings(json, "ultra_rare_night", ultraRareNight);
+        }
+        return new DefaultMessages(language, hash, morning.toArray(new String[0]), night.toArray(new String[0]),
+                ultraRareMorning.toArray(new String[0]), ultraRareNight.toArray(new String[0]));
+    }
+
+    /**
+     * The messages shipped in the mod jar, read from the classpath (the server and benchmarks,
+     * which have no client resource manager). {@link #NONE} if there are none for the language.
+     */
+    static DefaultMessages builtIn(String language) {
+        String resource = "/assets/insomnia_reminder/" + path(language);
+        try (InputStream in = DefaultMessages.class.getResourceAsStream(resource)) {
+            if (in == null) return NONE;
+            List<byte[]> layers = List.of(in.readAllBytes());
+            return parse(language, hash(language, layers), layers);
+        } catch (IOException e) {
+            LOGGER.warn("[Insomnia Reminder] Could not read {}", resource, e);
+            return NONE;
+        }
+    }
+
+    private static void addStrings(JsonObject json, String key, List<String> out) {
+        if (!(json.get(key) instanceof JsonArray array)) return;
+        for (JsonElement e : array) {
+            if (e.isJsonPrimitive()) {
+                String s = e.getAsString();
+                if (!s.isBlank()) out.add(s);
+            }
+        }
+    }
+}
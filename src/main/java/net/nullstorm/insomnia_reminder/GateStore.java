@@ -0,0 +1,255 @@
+package net.nullstorm.insomnia_reminder;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Per-world reminder gates (the last day each reminder played), so relogging, switching servers or
+ * restarting the game doesn't replay a reminder for a day that was already handled.
+ * <p>
+ * Worlds are keyed by a 64-bit hash of the server address, or of the save folder in singleplayer.
+ * At most {@link #CAPACITY} worlds are kept; when full, the least recently joined one is dropped.
+ * The file ({@code config/insomnia_reminder/gates.bin}) is a header followed by fixed 32-byte
+ * records, read once on the first join and written behind: on leave, at most once per
+ * {@link #WRITE_INTERVAL_NANOS} while gates change, and on quit. Client thread only.
+ */
+final class GateStore {
+
+    static final int CAPACITY = 256;
+    static final String FILE_NAME = "gates.bin";
+    static final long WRITE_INTERVAL_NANOS = 60L * 1_000_000_000L;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("insomnia_reminder");
+
+    private static final int MAGIC = 0x49524753; // "IRGS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12; // magic, version, count
+    private static final int RECORD_BYTES = 32; // key, lastDayAM, lastDayPM, lastUsed
+
+    private final Path file;
+    private final Long2IntOpenHashMap slotOf = new Long2IntOpenHashMap(CAPACITY * 2);
+
+    // Columns indexed by slot; slots [0, size) are in use.
+    private final long[] keys = new long[CAPACITY];
+    private final long[] lastDayAM = new long[CAPACITY];
+    private final long[] lastDayPM = new long[CAPACITY];
+    private final long[] lastUsed = new long[CAPACITY];
+    private int size;
+    private long clock;
+
+    private boolean loaded;
+    private boolean dirty;
+    private long dirtySince;
+
+    private final Writer writer;
+
+    GateStore(Path configDir) {
+        this.file = configDir.resolve(MessagePacks.DIR_NAME).resolve(FILE_NAME);
+        this.writer = new Writer(file);
+        slotOf.defaultReturnValue(-1);
+    }
+
+    /** Stable 64-bit key for a world id (FNV-1a). */
+    static long key(String worldId) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0, n = worldId.length(); i < n; i++) {
+            h ^= worldId.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * The slot of {@code key}, created with empty gates if the world is new (evicting the least
+     * recently used world when full). Marks the world as just used.
+     */
+    int acquire(long key) {
+        load();
+        int slot = slotOf.get(key);
+        if (slot < 0) {
+            slot = size < CAPACITY ? size++ : evictLeastRecentlyUsed();
+            keys[slot] = key;
+            lastDayAM[slot] = -1;
+            lastDayPM[slot] = -1;
+            slotOf.put(key, slot);
+        }
+        lastUsed[slot] = ++clock;
+        markDirty();
+        return slot;
+    }
+
+    long lastDayAM(int slot) {
+        return lastDayAM[slot];
+    }
+
+    long lastDayPM(int slot) {
+        return lastDayPM[slot];
+    }
+
+    void update(int slot, long am, long pm) {
+        if (lastDayAM[slot] == am && lastDayPM[slot] == pm) return;
+        lastDayAM[slot] = am;
+        lastDayPM[slot] = pm;
+        markDirty();
+    }
+
+    /** Hands the current state to the background writer if anything changed. */
+    void writeBehind() {
+        if (!dirty) return;
+        dirty = false;
+        writer.submit(encode());
+    }
+
+    /** {@link #writeBehind()} once changes are {@link #WRITE_INTERVAL_NANOS} old. */
+    void writeBehindIfDue(long now) {
+        if (dirty && now - dirtySince >= WRITE_INTERVAL_NANOS) writeBehind();
+    }
+
+    /** Writes any pending state now, on the calling thread (used at shutdown). */
+    void flush() {
+        writeBehind();
+        writer.flush();
+    }
+
+    private void markDirty() {
+        if (!dirty) {
+            dirty = true;
+            dirtySince = System.nanoTime();
+        }
+    }
+
+    // Moves the last slot into the evicted one, so used slots stay contiguous.
+    private int evictLeastRecentlyUsed() {
+        int victim = 0;
+        for (int i = 1; i < size; i++) {
+            if (lastUsed[i] < lastUsed[victim]) victim = i;
+        }
+        slotOf.remove(keys[victim]);
+        int last = --size;
+        if (victim != last) {
+            keys[victim] = keys[last];
+            lastDayAM[victim] = lastDayAM[last];
+            lastDayPM[victim] = lastDayPM[last];
+            lastUsed[victim] = lastUsed[last];
+            slotOf.put(keys[victim], victim);
+        }
+        return size++;
+    }
+
+    private byte[] encode() {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + size * RECORD_BYTES);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(size);
+        for (int i = 0; i < size; i++) {
+            buf.putLong(keys[i]).putLong(lastDayAM[i]).putLong(lastDayPM[i]).putLong(lastUsed[i]);
+        }
+        return buf.array();
+    }
+
+    private void load() {
+        if (loaded) return;
+        loaded = true;
+
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            LOGGER.warn("[Insomnia Reminder] Could not read {}", file, e);
+            return;
+        }
+
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        if (bytes.length < HEADER_BYTES || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+            LOGGER.warn("[Insomnia Reminder] Ignoring unreadable {}", file);
+            return;
+        }
+        int count = Math.min(buf.getInt(), CAPACITY);
+        if (count < 0 || buf.remaining() < count * RECORD_BYTES) {
+            LOGGER.warn("[Insomnia Reminder] Ignoring truncated {}", file);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            long key = buf.getLong();
+            if (slotOf.get(key) >= 0) {
+                buf.position(buf.position() + RECORD_BYTES - Long.BYTES);
+                continue;
+            }
+            int slot = size++;
+            keys[slot] = key;
+            lastDayAM[slot] = buf.getLong();
+            lastDayPM[slot] = buf.getLong();
+            lastUsed[slot] = buf.getLong();
+            clock = Math.max(clock, lastUsed[slot]);
+            slotOf.put(key, slot);
+        }
+    }
+
+    /**
+     * Coalescing background writer: only the newest snapshot is written, temp file then atomic
+     * rename, on a single daemon thread.
+     */
+    private static final class Writer {
+        private final Path file;
+        private final AtomicReference<byte[]> pending = new AtomicReference<>();
+        // Held for the whole write so flush() waits for an in-flight write instead of racing it.
+        private final Object writeLock = new Object();
+        private ExecutorService executor;
+
+        Writer(Path file) {
+            this.file = file;
+        }
+
+        void submit(byte[] snapshot) {
+            if (pending.getAndSet(snapshot) == null) executor().execute(this::writePending);
+        }
+
+        void flush() {
+            writePending();
+        }
+
+        private void writePending() {
+            synchronized (writeLock) {
+                byte[] bytes = pending.getAndSet(null);
+                if (bytes == null) return;
+                Path tmp = file.resolveSibling(FILE_NAME + ".tmp");
+                try {
+                    Files.createDirectories(file.getParent());
+                    Files.write(tmp, bytes, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                            StandardOpenOption.WRITE);
+                    try {
+                        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    } catch (AtomicMoveNotSupportedException e) {
+                        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } catch (IOException e) {
+                    LOGGER.error("[Insomnia Reminder] Could not save {}", file, e);
+                }
+            }
+        }
+
+        private synchronized ExecutorService executor() {
+            if (executor == null) {
+                executor = Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "Insomnia Reminder gate writer");
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+            return executor;
+        }
+    }
+}
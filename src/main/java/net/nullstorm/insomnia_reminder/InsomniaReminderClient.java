@@ -1,372 +1,521 @@
 package net.nullstorm.insomnia_reminder;
 
 import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.fabricmc.fabric.api.client.rendering.v1.HudRenderCallback;
+import net.fabricmc.fabric.api.resource.ResourceManagerHelper;
+import net.fabricmc.fabric.api.resource.ResourceReloadListenerKeys;
+import net.fabricmc.fabric.api.resource.SimpleSynchronousResourceReloadListener;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.client.MinecraftClient;
-import net.minecraft.client.font.TextRenderer;
+import net.minecraft.client.network.ServerInfo;
 import net.minecraft.client.sound.PositionedSoundInstance;
+import net.minecraft.client.toast.SystemToast;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.registry.Registries;
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.resource.ResourceType;
+import net.minecraft.server.integrated.IntegratedServer;
 import net.minecraft.sound.SoundCategory;
-import net.minecraft.sound.SoundEvent;
+import net.minecraft.stat.Stat;
 import net.minecraft.stat.Stats;
 import net.minecraft.text.Text;
 import net.minecraft.util.Identifier;
+import net.minecraft.util.WorldSavePath;
 import net.minecraft.world.World;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Insomnia Reminder (client-only):
+ * Insomnia Reminder, client side (the server side is {@link InsomniaReminderServer}):
  * - Night reminder (optional) encourages sleeping to avoid phantoms.
  * - Morning greeting + rooster sound at 06:00, and also when a slept night "skips" time.
- * - Overworld only (no dimension/world config).
+ * - Both follow the Overworld clock and only fire there; each world or server keeps its own per-day
+ *   gates ({@link GateStore}), so rejoining doesn't replay a reminder.
+ * - User rules ({@code rules} config) can fire in any dimension, optionally restricted to one.
+ * - With the companion server mod, exact sleep events replace what's inferred from time packets.
  */
 public class InsomniaReminderClient implements ClientModInitializer {
 
-    public static InsomniaReminderConfig CONFIG;
+    private static final Logger LOGGER = LoggerFactory.getLogger("insomnia_reminder");
+
+    // The running config and everything compiled from it; replaced as a whole, never mutated.
+    static volatile ConfigSnapshot CONFIG = ConfigSnapshot.DEFAULTS;
+    // Completes with the load time once the startup config load has been published.
+    private static final CompletableFuture<Long> CONFIG_LOADED = new CompletableFuture<>();
+    // Follows watchConfigFile; see watchConfig().
+    private static volatile ConfigWatcher WATCHER;
+    private static boolean STOPPING; // guarded by the class lock
+    // Built-in messages of the active language only; the pools are recompiled when they change.
+    private static final MessageResources MESSAGES = new MessageResources(InsomniaReminderClient::useDefaultMessages);
+    private static final ConfigPublisher PUBLISHER =
+            new ConfigPublisher(InsomniaReminderClient::compilePools, InsomniaReminderClient::compileRules);
+    // Indexed message packs; scanned on the loader thread and rescanned by the watcher, never on a save.
+    private static volatile List<MessagePack> PACKS = List.of();
 
     private static InsomniaReminderClient INSTANCE;
 
     /**
-     * Called after the config is saved from the ModMenu screen so changes take effect immediately,
-     * and per-day gating is reset in a predictable way for testing.
+     * Adds a notification sink; every reminder is delivered to it from then on (see {@link NotificationSink}).
+     * Sinks can be added at any time, from any thread.
+     */
+    public static void addNotificationSink(NotificationSink sink) {
+        NOTIFICATIONS.addSink(sink);
+    }
+
+    /**
+     * A mutable copy of the running config for the config screen to edit. Waits for the startup
+     * load if it's still running, so the screen never starts from defaults.
+     */
+    static InsomniaReminderConfig configForEditing() {
+        CONFIG_LOADED.join();
+        return CONFIG.editableCopy();
+    }
+
+    /** Sleep history aggregates for the stats screen; null while they're loading or before init. */
+    static SleepStats sleepStats() {
+        return INSTANCE != null ? INSTANCE.journal.stats() : null;
+    }
+
+    /**
+     * Called after the config is saved from the ModMenu screen so changes take effect immediately.
+     * Runs on the render thread: only what the edit changed is recompiled, and packs aren't rescanned.
      */
     public static void onConfigSaved(InsomniaReminderConfig newCfg) {
         if (newCfg == null) return;
+        publishConfig(newCfg, false);
+    }
 
-        InsomniaReminderConfig old = CONFIG;
-        CONFIG = newCfg;
+    // Hot-reload from the config watcher thread.
+    private static void onConfigFileChanged(InsomniaReminderConfig newCfg) {
+        publishConfig(newCfg, false);
+    }
 
-        // If the feature was toggled off -> on, allow it to fire again immediately (no restart needed).
-        if (INSTANCE != null && old != null) {
-            if (!old.morningEnabled && newCfg.morningEnabled) {
-                INSTANCE.lastDayPlayedAM = -1;
-            }
-            if (!old.nightEnabled && newCfg.nightEnabled) {
-                INSTANCE.lastDayPlayedPM = -1;
-            }
+    // Compiles what changed and publishes the next snapshot; see ConfigPublisher.
+    private static void publishConfig(InsomniaReminderConfig newCfg, boolean recompile) {
+        ConfigSnapshot next = PUBLISHER.publish(newCfg, recompile);
+        if (next != null) watchConfig();
+    }
+
+    /**
+     * Starts or stops the config and pack watcher to match the running {@code watchConfigFile}, so
+     * turning it on or off applies right away. Reads the latest snapshot rather than taking the
+     * caller's, so racing publishers can't leave it in the older state. Any thread, including the
+     * watcher's own (closing it ends its loop).
+     */
+    private static synchronized void watchConfig() {
+        boolean watch = CONFIG.watchConfigFile;
+        ConfigWatcher watcher = WATCHER;
+        if (watch == (watcher != null) || STOPPING) return;
+        if (watch) {
+            Path configDir = FabricLoader.getInstance().getConfigDir();
+            watcher = new ConfigWatcher(configDir, InsomniaReminderConfig.FILE_NAME, InsomniaReminderClient::onConfigFileChanged,
+                    MessagePacks.packDir(configDir), () -> reloadPacks(configDir));
+            watcher.start();
+            WATCHER = watcher;
+        } else {
+            WATCHER = null;
+            watcher.stop();
         }
     }
 
+    // Resource reload apply stage: the active language's built-in messages changed, so recompile the pools.
+    private static void useDefaultMessages(DefaultMessages messages) {
+        PUBLISHER.recompilePools();
+        LOGGER.info("[Insomnia Reminder] Using {} messages", messages.language());
+    }
 
-    // 06:00 is timeOfDay == 0 in modern Minecraft (day starts at 06:00).
-    private static final int AM_TICK = 0;
+    // Client thread only: applies what a new snapshot changes to client-thread state.
+    private void adoptConfig(ConfigSnapshot cfg) {
+        ConfigSnapshot old = reminders.adopt(cfg);
+        ReminderMetrics.setDetailed(cfg.debugMetrics);
+        if (old == null || cfg.rules != old.rules) useRules(cfg.rules);
+        if (old == null || cfg.pools != old.pools) prewarmLayouts(MinecraftClient.getInstance(), cfg.pools);
+    }
 
-    // Night reminder "window" tick. Keep it late evening so it's helpful.
-    // (This value came from the earlier working version; not a gameplay mechanic.)
-    private static final int PM_WARN_TICK = 12492;
+    private static final long METRICS_LOG_INTERVAL_NANOS = 10L * 60L * 1_000_000_000L;
 
-    // Small window so we don't spam if tick drifts.
-    private static final int WINDOW_TICKS = 100;
+    private static final Random RANDOM = new Random();
 
-    // When the night is slept away, client time often jumps forward and the player is ejected
-    // around 06:01–06:04. We treat any morning within this grace window as "wake-up morning".
-    private static final int SLEEP_WAKE_GRACE_TICKS = 2400; // ~2 minutes
+    // On-screen reminders with their wrapped layouts; layouts are dropped on resource reload.
+    private static final ReminderOverlay OVERLAY = new ReminderOverlay();
 
-    private static final Random RANDOM = new Random();
+    // Reminders go through the notification queue to the sinks instead of being shown from the tick.
+    private static final NotificationDispatcher NOTIFICATIONS = new NotificationDispatcher();
+    private static Text toastTitle;
+
+    // Placeholder rendering; client thread only.
+    private static final MessageTemplate.Values TEMPLATE_VALUES = new ClientTemplateValues();
+
+    // Chat and toast lines as ready-made Text components.
+    private static final LiteralTextCache TEXTS = new LiteralTextCache(512);
+
+    // Sleep/morning detection and per-day gates; fed from the tick and packet events.
+    private final ReminderStateMachine machine = new ReminderStateMachine();
+    // Config adoption, planning, rules and firing; the world is read through the host.
+    private final ReminderTick reminders = new ReminderTick(machine, NOTIFICATIONS, TEMPLATE_VALUES, RANDOM);
+    private final ClientHost host = new ClientHost();
+    // Gates survive relogs and restarts per world; -1 == not in a world.
+    private GateStore gates;
+    private int gateSlot = -1;
+    // Sleep history; the world key tags each journal record, 0 == not in a world.
+    private SleepJournal journal;
+    private long worldKey;
+    private int restBeforeReset;
 
-    // Default message pools (Overworld only)
-    private static final String[] MORNING_OVERWORLD = {
-            "Good morning! ☀️ The sun is up, and so are the creepers.",
-            "Rise and shine! Another beautiful day to punch trees.",
-            "Morning! The villagers are awake and already judging you.",
-            "Good morning! Coffee is optional — diamonds are not.",
-            "The rooster has spoken. It is officially daytime.",
-            "Morning! If you hear hissing, that’s… probably fine."
-    };
-
-    private static final String[] NIGHT_OVERWORLD = {
-            "Good night 🌙 Sleep now, avoid respawning later.",
-            "Nighttime detected. Beds are safer than bravery.",
-            "Good night! The monsters have clocked in for their shift.",
-            "It’s getting dark… statistically, this is a bad idea.",
-            "Time for sleep. Even the Endermen need personal space.",
-            "Good night! Don’t let the phantoms win."
-    };
-
-    private static final String[] ULTRA_RARE_MORNING = {
-            "You actually slept on time. I’m proud of you.",
-            "Legend says this player uses beds responsibly.",
-            "A rare morning indeed. Screenshot this moment."
-    };
-
-    private static final String[] ULTRA_RARE_NIGHT = {
-            "Beds. Use them. This is not a suggestion.",
-            "It’s late. The phantoms are sharpening their teeth."
-    };
-
-    // Per-day gating
-    private long lastDayPlayedAM = -1;
-    private long lastDayPlayedPM = -1;
-
-    // Track time so we can detect time jumps from sleeping or /time set.
-    private int lastTimeOfDaySeen = -1;
-    private long lastAbsTimeSeen = -1;
-
-    // Track stat to detect rest reset (sometimes helpful)
-    private int lastTimeSinceRest = -1;
+    private long lastMetricsLog = System.nanoTime();
 
     // Small centered HUD text overlay (SCREEN/BOTH mode)
 
     @Override
     public void onInitializeClient() {
+        long initStart = System.nanoTime();
         INSTANCE = this;
-        CONFIG = InsomniaReminderConfig.load(FabricLoader.getInstance().getConfigDir());
+        Path configDir = FabricLoader.getInstance().getConfigDir();
+        // Reading (or on first run writing) and compiling the config happen off the main thread.
+        // Until it's published the defaults apply; nothing can fire before a world is joined anyway.
+        Thread loader = new Thread(() -> loadConfig(configDir), "Insomnia Reminder config loader");
+        loader.setDaemon(true);
+        loader.start();
+        gates = new GateStore(configDir);
+        journal = new SleepJournal(configDir);
+        journal.start();
+        NOTIFICATIONS.addSink(InsomniaReminderClient::playSound);
+        NOTIFICATIONS.addSink(InsomniaReminderClient::showChat);
+        NOTIFICATIONS.addSink(InsomniaReminderClient::showOverlay);
+        NOTIFICATIONS.addSink(InsomniaReminderClient::showToast);
+        NOTIFICATIONS.addSink(new LogFileSink(configDir, () -> CONFIG.logNotifications));
+        ReminderJfrEvents.register();
+        HudRenderCallback.EVENT.register(OVERLAY::render);
+        HudRenderCallback.EVENT.register(MetricsHud::render);
+        // Pack messages are only known once drawn: lay out each one as it's prefetched.
+        MessageSampler.onPrefetched(msg -> {
+            MinecraftClient client = MinecraftClient.getInstance();
+            if (client != null) client.execute(() -> prewarmLayouts(client, List.of(msg)));
+        });
 
         ClientTickEvents.END_CLIENT_TICK.register(this::onEndClientTick);
-    }
 
-    private void onEndClientTick(MinecraftClient client) {
+        InsomniaReminderEvents.TIME_JUMPED.register((from, to) -> machine.onTimeJumped(from, to, !ClientObservations.serverEvents()));
+        InsomniaReminderEvents.REST_RESET.register((previous, current) -> {
+            restBeforeReset = Math.max(restBeforeReset, previous);
+            machine.onRestReset();
+        });
+        InsomniaReminderEvents.NIGHT_SKIPPED.register((from, to) -> machine.onNightSkipped());
+        ClientPlayNetworking.registerGlobalReceiver(SleepEventPayload.ID, (payload, context) -> ClientObservations.onSleepEvent(payload));
+
+        // Built-in messages of the active language; reloaded with resource packs and on language switch.
+        ResourceManagerHelper.get(ResourceType.CLIENT_RESOURCES).registerReloadListener(MESSAGES);
+
+        // Re-lay out every known message once fonts are reloaded (resource packs, F3+T, language switch).
+        ResourceManagerHelper.get(ResourceType.CLIENT_RESOURCES).registerReloadListener(new SimpleSynchronousResourceReloadListener() {
+            @Override
+            public Identifier getFabricId() {
+                return Identifier.of("insomnia_reminder", "text_layout");
+            }
 
-        if (client == null || client.player == null || client.world == null) return;
-        if (!CONFIG.enabled) return;
+            @Override
+            public Collection<Identifier> getFabricDependencies() {
+                return List.of(ResourceReloadListenerKeys.FONTS);
+            }
 
-        // Overworld only
-        if (client.world.getRegistryKey() != World.OVERWORLD) return;
+            @Override
+            public void reload(ResourceManager manager) {
+                OVERLAY.invalidate();
+                prewarmLayouts(MinecraftClient.getInstance(), CONFIG.pools);
+            }
+        });
+
+        // Don't lose a debounced config save on quit.
+        ClientLifecycleEvents.CLIENT_STOPPING.register(client -> {
+            synchronized (InsomniaReminderClient.class) {
+                STOPPING = true;
+                ConfigWatcher watcher = WATCHER;
+                if (watcher != null) watcher.stop();
+            }
+            ConfigWriter.flush();
+            saveGates();
+            gates.flush();
+            journal.close(1000);
+        });
+
+        ClientPlayConnectionEvents.JOIN.register((handler, sender, client) -> {
+            worldKey = GateStore.key(worldId(client));
+            gateSlot = gates.acquire(worldKey);
+            machine.restoreGates(gates.lastDayAM(gateSlot), gates.lastDayPM(gateSlot));
+        });
+
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> {
+            ClientObservations.reset();
+            reminders.resetCooldowns();
+            NOTIFICATIONS.clear();
+            OVERLAY.clear();
+            machine.clearPendingEvents();
+            saveGates();
+            gateSlot = -1;
+            worldKey = 0;
+            restBeforeReset = 0;
+            gates.writeBehind();
+        });
+
+        long mainThreadNanos = System.nanoTime() - initStart;
+        CONFIG_LOADED.thenAccept(loadNanos -> LOGGER.info(
+                "[Insomnia Reminder] Startup: {} ms on the main thread, config loaded and compiled in {} ms off-thread",
+                millis(mainThreadNanos), millis(loadNanos)));
+    }
 
-        long absTime = client.world.getTimeOfDay();
-        int timeOfDay = (int) (client.world.getTimeOfDay() % 24000L);
-        long dayIndex = absTime / 24000L;
+    // Watcher thread: a pack file was added, edited or removed.
+    private static void reloadPacks(Path configDir) {
+        PACKS = MessagePacks.scan(MessagePacks.packDir(configDir));
+        PUBLISHER.recompilePools();
+    }
 
-        // If time moves backwards (e.g. /time set), clear per-day gates so testing doesn't require a restart.
-        if (lastAbsTimeSeen != -1 && absTime < lastAbsTimeSeen) {
-            lastDayPlayedAM = -1;
-            lastDayPlayedPM = -1;
+    // Config loader thread, once at startup.
+    private static void loadConfig(Path configDir) {
+        long start = System.nanoTime();
+        try {
+            InsomniaReminderConfig loaded = InsomniaReminderConfig.load(configDir);
+            PACKS = MessagePacks.scan(MessagePacks.packDir(configDir));
+            // Also starts the watcher if watchConfigFile is on.
+            publishConfig(loaded, true);
+        } catch (RuntimeException e) {
+            LOGGER.error("[Insomnia Reminder] Could not load config, using defaults", e);
+        } finally {
+            CONFIG_LOADED.complete(System.nanoTime() - start);
         }
+    }
 
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1e6);
+    }
 
-        // Detect TIME_SINCE_REST (0 == just slept) as a backup.
-        int timeSinceRest = client.player.getStatHandler()
-                .getStat(Stats.CUSTOM.getOrCreateStat(Stats.TIME_SINCE_REST));
-        boolean restJustReset = (lastTimeSinceRest != -1 && timeSinceRest < lastTimeSinceRest);
-        lastTimeSinceRest = timeSinceRest;
-
-        // Detect a big time jump forward (sleep skipping the night).
-        // Normal tick delta is +1; sleep causes a large jump.
-        boolean bigForwardJump = false;
-        if (lastAbsTimeSeen != -1) {
-            long delta = absTime - lastAbsTimeSeen;
-            if (delta > 200) bigForwardJump = true;
-        }
-        lastAbsTimeSeen = absTime;
-
-        boolean jumpedFromNightToMorning = false;
-        if (bigForwardJump && lastTimeOfDaySeen != -1) {
-            boolean wasNight = lastTimeOfDaySeen >= 12000;
-            boolean isMorning = timeOfDay >= AM_TICK && timeOfDay <= AM_TICK + SLEEP_WAKE_GRACE_TICKS;
-            jumpedFromNightToMorning = wasNight && isMorning;
-			boolean sleptThisTick = jumpedFromNightToMorning || restJustReset;
-        if (sleptThisTick) {
-        // Force-reset insomnia state; client stat sync can lag behind actual sleep
-        timeSinceRest = 0;
-        lastTimeSinceRest = 0;
-        }
-        }
-        lastTimeOfDaySeen = timeOfDay;
-
-        // ----- Morning (rooster + greeting) -----
-        if (CONFIG.morningEnabled) {
-            boolean inExactWindow = inWindow(timeOfDay, AM_TICK, WINDOW_TICKS);
-            boolean inWakeGrace = timeOfDay >= AM_TICK && timeOfDay <= AM_TICK + SLEEP_WAKE_GRACE_TICKS;
-
-            // Fire once per day. If time jumps to 06:03, still count for that day.
-            if (lastDayPlayedAM != dayIndex) {
-                if (inExactWindow) {
-                    playMorning(client, dayIndex);
-                } else if (inWakeGrace && (jumpedFromNightToMorning || restJustReset)) {
-                    playMorning(client, dayIndex);
-                }
-            }
-        }
-
-        // ----- Night reminder (wolf + message) -----
-        if (CONFIG.nightEnabled) {
-            if (lastDayPlayedPM != dayIndex && inWindow(timeOfDay, PM_WARN_TICK, WINDOW_TICKS)) {
-                boolean isInsomniac = timeSinceRest >= 72000; // phantom threshold
-                if (CONFIG.nightAlwaysPlays || isInsomniac) {
-                    playNight(client, dayIndex);
-                }
+    private void onEndClientTick(MinecraftClient client) {
+        long start = System.nanoTime();
+        long allocStart = ReminderMetrics.detailed() ? ReminderMetrics.threadAllocatedBytes() : -1;
+
+        // One read of the config per tick; a newly published snapshot is adopted here.
+        ConfigSnapshot cfg = CONFIG;
+        if (cfg != reminders.adopted()) adoptConfig(cfg);
+        boolean inWorld = client != null && client.player != null && client.world != null;
+        reminders.tick(cfg, inWorld ? host.of(client) : null);
+
+        long end = System.nanoTime();
+        ReminderMetrics.recordTick(end - start);
+        if (allocStart >= 0) {
+            ReminderMetrics.recordTickAllocation(ReminderMetrics.threadAllocatedBytes() - allocStart);
+            if (end - lastMetricsLog > METRICS_LOG_INTERVAL_NANOS) {
+                lastMetricsLog = end;
+                LOGGER.info("[Insomnia Reminder] {}", ReminderMetrics.summary());
             }
         }
+        NOTIFICATIONS.dispatch(end);
+        gates.writeBehindIfDue(end);
     }
 
-    private void playMorning(MinecraftClient client, long dayIndex) {
-        lastDayPlayedAM = dayIndex;
+    private void saveGates() {
+        if (gateSlot >= 0) gates.update(gateSlot, machine.lastDayPlayedAM(), machine.lastDayPlayedPM());
+    }
 
-        // rooster sound
-        playSound(client, "rooster"); // see sounds.json mapping
-        String msg = chooseMessage(true);
-        if (msg != null) displayText(client, msg);
+    // Multiplayer and LAN: the address as typed in the server list. Singleplayer: the save folder.
+    private static String worldId(MinecraftClient client) {
+        ServerInfo server = client.getCurrentServerEntry();
+        if (server != null && !client.isInSingleplayer()) return "server:" + server.address.toLowerCase(Locale.ROOT);
+        IntegratedServer integrated = client.getServer();
+        if (integrated != null) return "world:" + integrated.getSavePath(WorldSavePath.ROOT).toAbsolutePath().normalize();
+        return "unknown";
     }
 
-    private void playNight(MinecraftClient client, long dayIndex) {
-        lastDayPlayedPM = dayIndex;
+    // ---- Built-in sinks (client thread) ----
 
-        // wolf howl sound
-        playSound(client, "wolf");
-        String msg = chooseMessage(false);
-        if (msg != null) displayText(client, msg);
-    }
+    private static void playSound(ReminderNotification n) {
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (n.sound() == null || client == null || client.player == null) return;
 
-    private static boolean inWindow(int timeOfDay, int target, int windowTicks) {
-        return timeOfDay >= target && timeOfDay <= target + windowTicks;
+        float vol = CONFIG.volume;
+        if (vol <= 0f) return;
+
+        ReminderMetrics.soundPlay();
+        // Use player-relative category (master(sound, pitch, volume))
+        client.getSoundManager().play(PositionedSoundInstance.master(n.sound(), 1.0f, vol));
     }
 
-    private void playSound(MinecraftClient client, String vanillaId) {
-        if (client == null || client.player == null) return;
+    private static void showChat(ReminderNotification n) {
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (!hasText(n) || client == null || client.player == null || !CONFIG.showsChat) return;
+        client.player.sendMessage(TEXTS.get(n.message()), false);
+    }
 
-        float vol = Math.max(0f, Math.min(1f, CONFIG.volumePercent / 100f));
-        if (vol <= 0f) return;
+    private static void showOverlay(ReminderNotification n) {
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (!hasText(n) || client == null || client.player == null || !CONFIG.showsScreen) return;
+        OVERLAY.show(n.message(), System.nanoTime());
+    }
 
-        Identifier id = Identifier.of("insomnia_reminder", vanillaId);
-        SoundEvent ev = SoundEvent.of(id);
+    private static void showToast(ReminderNotification n) {
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (!hasText(n) || !CONFIG.toastNotifications || client == null || client.getToastManager() == null) return;
+        if (toastTitle == null) toastTitle = Text.literal("Insomnia Reminder");
+        // show() replaces a visible toast of the same type instead of stacking another one
+        SystemToast.show(client.getToastManager(), SystemToast.Type.PERIODIC_NOTIFICATION, toastTitle, TEXTS.get(n.message()));
+    }
 
-        // Use player-relative category
-        client.getSoundManager().play(PositionedSoundInstance.master(ev, vol, 1.0f));
+    private static boolean hasText(ReminderNotification n) {
+        return n.message() != null && !n.message().isBlank();
     }
 
-    private String chooseMessage(boolean morning) {
-        // ultra-rare
-        if (CONFIG.ultraRareMessages && CONFIG.ultraRareChancePercent > 0) {
-            if (RANDOM.nextInt(100) < CONFIG.ultraRareChancePercent) {
-                String[] pool = morning ? ULTRA_RARE_MORNING : ULTRA_RARE_NIGHT;
-                return pool[RANDOM.nextInt(pool.length)];
-            }
-        }
+    // References the packs as last scanned; reads nothing from them.
+    private static MessagePools compilePools(InsomniaReminderConfig cfg) {
+        return MessagePools.compile(cfg, MESSAGES.current(), PACKS, currentLanguage());
+    }
 
-        // weighted custom vs defaults
-        List<WeightedMsg> combined = new ArrayList<>();
-        for (String s : getDefaultMessagePool(morning)) combined.add(new WeightedMsg(s, 10));
+    // Off-thread safe: registry reads only. Statistics are resolved in useRules().
+    private static ReminderRules compileRules(InsomniaReminderConfig cfg) {
+        return ReminderRules.compile(cfg.rules, id -> {
+            Identifier stat = Identifier.tryParse(id);
+            return stat != null && Registries.CUSTOM_STAT.containsId(stat);
+        });
+    }
 
-        List<WeightedMsg> custom = getCustomMessages(morning);
-        if (CONFIG.customMessagesEnabled && !custom.isEmpty()) {
-            if (!CONFIG.includeDefaultMessagesWhenCustomPresent) combined.clear();
-            combined.addAll(custom);
+    // Client thread only. Stat instances are keyed by the registry's own Identifier instance.
+    private static void useRules(ReminderRules rules) {
+        String[] ids = rules.statIds();
+        Stat<?>[] stats = new Stat<?>[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            stats[i] = Stats.CUSTOM.getOrCreateStat(Registries.CUSTOM_STAT.get(Identifier.tryParse(ids[i])));
         }
+        ClientObservations.trackRuleStats(stats);
+    }
 
-        return chooseWeighted(combined);
+    private static String currentLanguage() {
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (client == null || client.getLanguageManager() == null) return "en_us";
+        return client.getLanguageManager().getLanguage();
     }
 
-    private static void displayText(MinecraftClient client, String msg) {
-        if (client == null || client.player == null || msg == null || msg.isBlank()) return;
+    // The reminder tick's view of the client; client thread only, while in a world.
+    private final class ClientHost implements ReminderTick.Host {
+        private MinecraftClient client;
 
-        InsomniaReminderConfig.MessageDisplayMode mode = CONFIG.messageDisplayMode;
-        if (mode == null) mode = InsomniaReminderConfig.MessageDisplayMode.BOTH;
+        ClientHost of(MinecraftClient client) {
+            this.client = client;
+            return this;
+        }
 
-        if (mode == InsomniaReminderConfig.MessageDisplayMode.CHAT || mode == InsomniaReminderConfig.MessageDisplayMode.BOTH) {
-            client.player.sendMessage(Text.literal(msg), false);
+        @Override
+        public Object world() {
+            return client.world;
         }
 
-        if (mode == InsomniaReminderConfig.MessageDisplayMode.SCREEN || mode == InsomniaReminderConfig.MessageDisplayMode.BOTH) {
-            showTitle(client, msg);
+        @Override
+        public boolean inOverworld() {
+            return client.world.getRegistryKey() == World.OVERWORLD;
         }
-    }
 
-    // Uses the vanilla title system, but automatically fits the text so it doesn't blast off-screen.
-    private static void showTitle(MinecraftClient client, String msg) {
-        // Subtitle-size center-ish popup:
-        // Minecraft titles have a fixed large font; using subtitle gives us a smaller, more readable popup
-        // that still appears near the center. We keep the SCREEN line empty and put the whole message
-        // into the subtitle, truncating with an ellipsis if needed.
-        if (client == null || client.inGameHud == null || client.textRenderer == null) return;
-        if (msg == null) return;
+        @Override
+        public String dimensionId() {
+            return client.world.getRegistryKey().getValue().toString();
+        }
 
-        String raw = msg.trim();
-        if (raw.isEmpty()) return;
+        @Override
+        public boolean paused() {
+            return client.isPaused();
+        }
 
-        TextRenderer tr = client.textRenderer;
+        @Override
+        public boolean timeSynced() {
+            return ClientObservations.timeSynced(client.world);
+        }
 
-        int maxWidthPx = (int) (client.getWindow().getScaledWidth() * 0.85);
-        if (maxWidthPx < 180) maxWidthPx = 180;
+        @Override
+        public boolean focused() {
+            return client.isWindowFocused();
+        }
 
-        String fitted = (tr.getWidth(raw) <= maxWidthPx) ? raw : truncateToWidth(tr, raw, maxWidthPx);
+        @Override
+        public long timeOfDay() {
+            return client.world.getTimeOfDay();
+        }
 
-        client.inGameHud.setTitle(Text.empty());
-        client.inGameHud.setSubtitle(Text.literal(fitted));
-        client.inGameHud.setTitleTicks(5, 45, 10); // fadeIn, stay, fadeOut
-    }
+        @Override
+        public long worldAge() {
+            return client.world.getTime();
+        }
 
-private static String truncateToWidth(TextRenderer tr, String s, int maxWidthPx) {
-        if (s == null) return "";
-        String t = s;
-        if (tr.getWidth(t) <= maxWidthPx) return t;
-
-        String ell = "…";
-        int ellW = tr.getWidth(ell);
-        if (ellW >= maxWidthPx) return "";
-
-        int lo = 0, hi = t.length();
-        while (lo < hi) {
-            int mid = (lo + hi + 1) / 2;
-            String sub = t.substring(0, mid);
-            if (tr.getWidth(sub) + ellW <= maxWidthPx) lo = mid;
-            else hi = mid - 1;
+        @Override
+        public int weather() {
+            ClientWorld world = client.world;
+            return world.isThundering() ? ReminderRules.WEATHER_THUNDER
+                    : world.isRaining() ? ReminderRules.WEATHER_RAIN
+                    : ReminderRules.WEATHER_CLEAR;
         }
-        if (lo <= 0) return "";
-        return t.substring(0, lo) + ell;
-    }
 
-    private static String appendEllipsisIfNeeded(TextRenderer tr, String s, int maxWidthPx) {
-        String ell = "…";
-        if (tr.getWidth(s) <= maxWidthPx) return s;
-        return truncateToWidth(tr, s, maxWidthPx);
-    }
+        @Override
+        public int timeSinceRest() {
+            return ClientObservations.timeSinceRest();
+        }
 
+        @Override
+        public int[] ruleStatValues() {
+            return ClientObservations.ruleStatValues();
+        }
 
-    private static String[] getDefaultMessagePool(boolean morning) {
-        return morning ? MORNING_OVERWORLD : NIGHT_OVERWORLD;
-    }
+        @Override
+        public void rested(long time, int rest) {
+            // The stat may already read 0 after a server reset; journal how long the player was up.
+            journal.record(SleepStats.SLEPT, worldKey, time, Math.max(rest, restBeforeReset));
+            restBeforeReset = 0;
+            ClientObservations.markRested();
+        }
 
-    private static List<WeightedMsg> getCustomMessages(boolean morning) {
-        List<WeightedMsg> msgs = new ArrayList<>();
-        if (morning) {
-            addIfNotBlankWeighted(msgs, CONFIG.customMorning1, CONFIG.customMorning1Weight);
-            addIfNotBlankWeighted(msgs, CONFIG.customMorning2, CONFIG.customMorning2Weight);
-            addIfNotBlankWeighted(msgs, CONFIG.customMorning3, CONFIG.customMorning3Weight);
-            addIfNotBlankWeighted(msgs, CONFIG.customMorning4, CONFIG.customMorning4Weight);
-            addIfNotBlankWeighted(msgs, CONFIG.customMorning5, CONFIG.customMorning5Weight);
-        } else {
-            addIfNotBlankWeighted(msgs, CONFIG.customNight1, CONFIG.customNight1Weight);
-            addIfNotBlankWeighted(msgs, CONFIG.customNight2, CONFIG.customNight2Weight);
-            addIfNotBlankWeighted(msgs, CONFIG.customNight3, CONFIG.customNight3Weight);
-            addIfNotBlankWeighted(msgs, CONFIG.customNight4, CONFIG.customNight4Weight);
-            addIfNotBlankWeighted(msgs, CONFIG.customNight5, CONFIG.customNight5Weight);
+        @Override
+        public void dayStarted(long time) {
+            journal.record(SleepStats.DAY_STARTED, worldKey, time, ClientObservations.timeSinceRest());
         }
-        return msgs;
-    }
 
-    private static void addIfNotBlankWeighted(List<WeightedMsg> list, String s, int weight) {
-        if (s == null) return;
-        String v = s.trim();
-        if (v.isEmpty()) return;
-        int w = Math.max(0, weight);
-        if (w <= 0) return;
-        list.add(new WeightedMsg(v, w));
+        @Override
+        public void reminderFired(boolean morning, long time, int rest) {
+            if (!morning) journal.record(SleepStats.NIGHT_REMINDER, worldKey, time, rest);
+            saveGates();
+        }
     }
 
-    private static String chooseWeighted(List<WeightedMsg> msgs) {
-        if (msgs == null || msgs.isEmpty()) return null;
-        int total = 0;
-        for (WeightedMsg m : msgs) total += Math.max(0, m.weight);
-        if (total <= 0) return null;
-
-        int r = RANDOM.nextInt(total);
-        int acc = 0;
-        for (WeightedMsg m : msgs) {
-            acc += Math.max(0, m.weight);
-            if (r < acc) return m.msg;
+    // Looked up only for the placeholders a message uses; client thread only.
+    private static final class ClientTemplateValues implements MessageTemplate.Values {
+        @Override
+        public String playerName() {
+            MinecraftClient client = MinecraftClient.getInstance();
+            return client.player != null ? client.player.getName().getString() : "";
+        }
+
+        @Override
+        public long worldTime() {
+            MinecraftClient client = MinecraftClient.getInstance();
+            return client.world != null ? client.world.getTimeOfDay() : 0;
         }
-        return msgs.get(msgs.size() - 1).msg;
-    }
 
-    private static class WeightedMsg {
-        final String msg;
-        final int weight;
-        WeightedMsg(String msg, int weight) {
-            this.msg = msg;
-            this.weight = weight;
+        @Override
+        public int timeSinceRest() {
+            return ClientObservations.timeSinceRest();
         }
     }
+
+    // Measures on the client thread during reload: TextRenderer's glyph caches aren't thread-safe.
+    private static void prewarmLayouts(MinecraftClient client, MessagePools pools) {
+        prewarmLayouts(client, pools.inlineMessages());
+    }
+
+    private static void prewarmLayouts(MinecraftClient client, List<String> messages) {
+        if (client == null || client.textRenderer == null || client.getWindow() == null) return;
+        OVERLAY.prewarm(messages, client.textRenderer, client.getWindow().getScaledWidth());
+    }
 }
@@ -6,17 +6,43 @@ import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParseException;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 
 /**
  * Simple Gson-backed config for Insomnia Reminder.
  * Unknown fields in older config files are ignored by Gson, so upgrades are safe.
+ * Writes are atomic (temp file + rename) and the last written file is kept as a .bak,
+ * which load falls back to if the main file is malformed.
  */
-public class InsomniaReminderConfig {
-    private static final String FILE_NAME = "insomnia_reminder.json";
+public class InsomniaReminderConfig implements Cloneable {
+    private static final Logger LOGGER = LoggerFactory.getLogger("insomnia_reminder");
+
+    static final String FILE_NAME = "insomnia_reminder.json";
+
+    // Hot-reload refuses anything bigger; a real config is a couple of KiB.
+    private static final long MAX_RELOAD_BYTES = 256 * 1024;
+
+    // changesFrom() groups
+    static final int CHANGED_TOGGLES = 1;
+    static final int CHANGED_SOUND = 2;
+    static final int CHANGED_DISPLAY = 4;
+    static final int CHANGED_MESSAGES = 8;
+    static final int CHANGED_OTHER = 16;
+    static final int CHANGED_RULES = 32;
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String BACKUP_SUFFIX = ".bak";
     private static final Gson GSON = new GsonBuilder()
             .registerTypeAdapter(MessageDisplayMode.class, (JsonDeserializer<MessageDisplayMode>) (JsonElement json, java.lang.reflect.Type typeOfT, com.google.gson.JsonDeserializationContext context) -> {
                 try {
@@ -44,6 +70,12 @@ public class InsomniaReminderConfig {
     // Where to display reminder text when it triggers.
     public MessageDisplayMode messageDisplayMode = MessageDisplayMode.SCREEN;
 
+    /** Also show reminders as a toast in the top-right corner. */
+    public boolean toastNotifications = false;
+
+    /** Append every reminder to config/insomnia_reminder/reminders.log. */
+    public boolean logNotifications = false;
+
     // ---- Custom messages + weighting ----
     public boolean customMessagesEnabled = false;
     public boolean includeDefaultMessagesWhenCustomPresent = true;
@@ -60,17 +92,131 @@ public class InsomniaReminderConfig {
     public String customNight4 = ""; public int customNight4Weight = 10;
     public String customNight5 = ""; public int customNight5Weight = 10;
 
+    /** Load extra weighted messages from config/insomnia_reminder/packs/*.txt (see MessagePack). */
+    public boolean messagePacksEnabled = true;
+
     // ---- Ultra-rare funnies ----
     public boolean ultraRareMessages = true;
     public int ultraRareChancePercent = 1;
 
+    /** Reload this file automatically when it changes on disk. */
+    public boolean watchConfigFile = true;
+
+    /** When running on a server: send reminders to every player, including those without the mod. */
+    public boolean serverReminders = true;
+
+    /** Measure per-tick allocation, show metrics on the F3 screen and log a summary every 10 minutes. */
+    public boolean debugMetrics = false;
+
+    /** User-defined reminders on top of morning and night (see {@link ReminderRule}). */
+    public List<ReminderRule> rules = new ArrayList<>();
+
     public enum MessageDisplayMode {
         CHAT,
         SCREEN,
-        BOTH
+        BOTH;
+
+        boolean showsChat() {
+            return this != SCREEN;
+        }
+
+        boolean showsScreen() {
+            return this != CHAT;
+        }
+    }
+
+    /**
+     * A user-defined reminder: shows {@link #message} (and plays {@link #sound}) when every condition
+     * holds, then stays quiet for {@link #cooldownTicks} ticks of play. Compiled by {@link ReminderRules}.
+     */
+    public static class ReminderRule implements Cloneable {
+        public String name = "";
+        public boolean enabled = true;
+
+        /** Time of day window [fromTick, toTick); wraps past midnight when fromTick > toTick, all day when equal. */
+        public int fromTick = 0;
+        public int toTick = 0;
+
+        /** A {@code Stats.CUSTOM} statistic (e.g. {@code time_since_rest}, {@code minecraft:play_time}); empty == none. */
+        public String stat = "";
+        public int statAtLeast = 0;
+        /** Exclusive upper bound; -1 == none. */
+        public int statBelow = -1;
+
+        public Weather weather = Weather.ANY;
+
+        /** Dimension id (e.g. {@code minecraft:the_nether}); empty == any. */
+        public String dimension = "";
+
+        public int cooldownTicks = 24000;
+
+        public String message = "";
+        public RuleSound sound = RuleSound.NONE;
+
+        public enum Weather {
+            ANY,
+            CLEAR,
+            RAIN, // thunderstorms included
+            THUNDER
+        }
+
+        public enum RuleSound {
+            NONE,
+            ROOSTER,
+            WOLF
+        }
+
+        ReminderRule copy() {
+            try {
+                return (ReminderRule) super.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        void sanitize() {
+            if (name == null) name = "";
+            fromTick = clampInt(fromTick, 0, 23999);
+            toTick = clampInt(toTick, 0, 23999);
+            if (stat == null) stat = "";
+            statAtLeast = Math.max(0, statAtLeast);
+            if (statBelow < -1) statBelow = -1;
+            if (weather == null) weather = Weather.ANY;
+            if (dimension == null) dimension = "";
+            cooldownTicks = Math.max(1, cooldownTicks);
+            if (message == null) message = "";
+            if (sound == null) sound = RuleSound.NONE;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ReminderRule r)) return false;
+            return enabled == r.enabled && fromTick == r.fromTick && toTick == r.toTick
+                    && statAtLeast == r.statAtLeast && statBelow == r.statBelow && cooldownTicks == r.cooldownTicks
+                    && weather == r.weather && sound == r.sound && name.equals(r.name) && stat.equals(r.stat)
+                    && dimension.equals(r.dimension) && message.equals(r.message);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, fromTick, toTick, stat, dimension, message);
+        }
     }
 
     public static InsomniaReminderConfig load(Path configDir) {
+        ReminderJfrEvents.ConfigIo io = new ReminderJfrEvents.ConfigIo();
+        io.begin();
+        long start = System.nanoTime();
+        try {
+            return loadOrDefaults(configDir);
+        } finally {
+            ReminderMetrics.configLoaded(System.nanoTime() - start);
+            io.operation = "load";
+            io.commit();
+        }
+    }
+
+    private static InsomniaReminderConfig loadOrDefaults(Path configDir) {
         try {
             Files.createDirectories(configDir);
             Path p = configDir.resolve(FILE_NAME);
@@ -79,25 +225,147 @@ public class InsomniaReminderConfig {
                 cfg.save(configDir);
                 return cfg;
             }
+            InsomniaReminderConfig cfg = read(p);
+            if (cfg != null) return cfg;
+
+            // Malformed main file: use the last known good copy, but leave the broken file for the user to fix.
+            LOGGER.warn("[Insomnia Reminder] {} is malformed, trying backup", p);
+            cfg = read(configDir.resolve(FILE_NAME + BACKUP_SUFFIX));
+            return cfg != null ? cfg : new InsomniaReminderConfig();
+        } catch (Exception e) {
+            // If config is unreadable, fall back to defaults.
+            LOGGER.warn("[Insomnia Reminder] Could not load config, using defaults", e);
+            return new InsomniaReminderConfig();
+        }
+    }
+
+    /**
+     * Strict load for hot-reload: returns null if the file is missing, too big or malformed
+     * (no backup or default fallback, so the caller can keep its running config).
+     */
+    static InsomniaReminderConfig tryLoad(Path configDir) {
+        Path p = configDir.resolve(FILE_NAME);
+        try {
+            if (Files.size(p) > MAX_RELOAD_BYTES) return null;
+        } catch (IOException e) {
+            return null;
+        }
+        return read(p);
+    }
+
+    // Returns null if the file is missing or malformed.
+    private static InsomniaReminderConfig read(Path p) {
+        try {
+            if (!Files.exists(p)) return null;
             String json = Files.readString(p, StandardCharsets.UTF_8);
             InsomniaReminderConfig cfg = GSON.fromJson(json, InsomniaReminderConfig.class);
-            if (cfg == null) cfg = new InsomniaReminderConfig();
+            if (cfg == null) return null;
             cfg.sanitize();
             return cfg;
-        } catch (Exception ignored) {
-            // If config is malformed, fall back to defaults.
-            return new InsomniaReminderConfig();
+        } catch (Exception e) {
+            return null;
         }
     }
 
+    /**
+     * Sanitizes now and hands a snapshot to the background writer.
+     * Rapid saves are coalesced; call {@link ConfigWriter#flush()} to force the write.
+     */
+    public void saveAsync(Path configDir) {
+        sanitize();
+        ConfigWriter.submit(configDir, copy());
+    }
+
+    /** Writes synchronously: temp file, then atomic rename over the old file, then a .bak copy. */
     public void save(Path configDir) {
+        ReminderJfrEvents.ConfigIo io = new ReminderJfrEvents.ConfigIo();
+        io.begin();
+        long start = System.nanoTime();
         try {
             Files.createDirectories(configDir);
             sanitize();
             Path p = configDir.resolve(FILE_NAME);
-            Files.writeString(p, GSON.toJson(this), StandardCharsets.UTF_8);
-        } catch (IOException ignored) {
+            Path tmp = configDir.resolve(FILE_NAME + TEMP_SUFFIX);
+
+            Files.writeString(tmp, GSON.toJson(this), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+
+            try {
+                Files.move(tmp, p, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            // What we just wrote is known good; a later hand edit that breaks the file falls back to it.
+            Files.copy(p, configDir.resolve(FILE_NAME + BACKUP_SUFFIX), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.error("[Insomnia Reminder] Could not save config to {}", configDir, e);
+        } finally {
+            ReminderMetrics.configSaved(System.nanoTime() - start);
+            io.operation = "save";
+            io.commit();
+        }
+    }
+
+    /** Every field is a primitive, String or enum, except the rule list, which is copied rule by rule. */
+    public InsomniaReminderConfig copy() {
+        try {
+            InsomniaReminderConfig c = (InsomniaReminderConfig) super.clone();
+            c.rules = new ArrayList<>(rules.size());
+            for (ReminderRule r : rules) c.rules.add(r.copy());
+            return c;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /** A copy with every value clamped or defaulted into range; this config is left as is. */
+    InsomniaReminderConfig sanitizedCopy() {
+        InsomniaReminderConfig c = copy();
+        c.sanitize();
+        return c;
+    }
+
+    /** Which groups of settings (CHANGED_* bits) differ from {@code old}. */
+    int changesFrom(InsomniaReminderConfig old) {
+        if (old == null) return CHANGED_TOGGLES | CHANGED_SOUND | CHANGED_DISPLAY | CHANGED_MESSAGES | CHANGED_OTHER | CHANGED_RULES;
+        int changed = 0;
+
+        if (enabled != old.enabled || morningEnabled != old.morningEnabled || nightEnabled != old.nightEnabled
+                || nightAlwaysPlays != old.nightAlwaysPlays) {
+            changed |= CHANGED_TOGGLES;
         }
+        if (volumePercent != old.volumePercent) changed |= CHANGED_SOUND;
+        if (messageDisplayMode != old.messageDisplayMode || toastNotifications != old.toastNotifications
+                || logNotifications != old.logNotifications) {
+            changed |= CHANGED_DISPLAY;
+        }
+
+        if (customMessagesEnabled != old.customMessagesEnabled
+                || includeDefaultMessagesWhenCustomPresent != old.includeDefaultMessagesWhenCustomPresent
+                || messagePacksEnabled != old.messagePacksEnabled
+                || ultraRareMessages != old.ultraRareMessages
+                || ultraRareChancePercent != old.ultraRareChancePercent
+                || !Objects.equals(customMorning1, old.customMorning1) || customMorning1Weight != old.customMorning1Weight
+                || !Objects.equals(customMorning2, old.customMorning2) || customMorning2Weight != old.customMorning2Weight
+                || !Objects.equals(customMorning3, old.customMorning3) || customMorning3Weight != old.customMorning3Weight
+                || !Objects.equals(customMorning4, old.customMorning4) || customMorning4Weight != old.customMorning4Weight
+                || !Objects.equals(customMorning5, old.customMorning5) || customMorning5Weight != old.customMorning5Weight
+                || !Objects.equals(customNight1, old.customNight1) || customNight1Weight != old.customNight1Weight
+                || !Objects.equals(customNight2, old.customNight2) || customNight2Weight != old.customNight2Weight
+                || !Objects.equals(customNight3, old.customNight3) || customNight3Weight != old.customNight3Weight
+                || !Objects.equals(customNight4, old.customNight4) || customNight4Weight != old.customNight4Weight
+                || !Objects.equals(customNight5, old.customNight5) || customNight5Weight != old.customNight5Weight) {
+            changed |= CHANGED_MESSAGES;
+        }
+
+        if (watchConfigFile != old.watchConfigFile || debugMetrics != old.debugMetrics
+                || serverReminders != old.serverReminders) {
+            changed |= CHANGED_OTHER;
+        }
+        if (!rules.equals(old.rules)) changed |= CHANGED_RULES;
+        return changed;
     }
 
     private void sanitize() {
@@ -118,6 +386,10 @@ public class InsomniaReminderConfig {
         customNight5Weight = clampInt(customNight5Weight, 0, 100);
 
         if (messageDisplayMode == null) messageDisplayMode = MessageDisplayMode.BOTH;
+
+        if (rules == null) rules = new ArrayList<>();
+        rules.removeIf(Objects::isNull);
+        for (ReminderRule r : rules) r.sanitize();
     }
 
     private static int clampInt(int v, int min, int max) {
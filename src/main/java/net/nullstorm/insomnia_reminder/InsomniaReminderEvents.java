@@ -0,0 +1,60 @@
+package net.nullstorm.insomnia_reminder;
+
+import net.fabricmc.fabric.api.event.Event;
+import net.fabricmc.fabric.api.event.EventFactory;
+
+/**
+ * Typed client-side events published from incoming packets (see ClientObservations).
+ * On a server with the companion installed, TIME_JUMPED and REST_RESET are no longer inferred from
+ * world time and stat syncs; REST_RESET and NIGHT_SKIPPED then come from exact server events.
+ * All events are invoked on the client thread.
+ */
+public final class InsomniaReminderEvents {
+
+    /** World time changed by more than a normal correction (sleep, /time set). */
+    public static final Event<TimeJumped> TIME_JUMPED = EventFactory.createArrayBacked(TimeJumped.class,
+            listeners -> (from, to) -> {
+                for (TimeJumped l : listeners) l.onTimeJumped(from, to);
+            });
+
+    /** TIME_SINCE_REST went down between two statistics syncs, or the server said the player got out of bed. */
+    public static final Event<RestReset> REST_RESET = EventFactory.createArrayBacked(RestReset.class,
+            listeners -> (previous, current) -> {
+                for (RestReset l : listeners) l.onRestReset(previous, current);
+            });
+
+    /** The server skipped the night because everyone slept (only on servers with the companion). */
+    public static final Event<NightSkipped> NIGHT_SKIPPED = EventFactory.createArrayBacked(NightSkipped.class,
+            listeners -> (from, to) -> {
+                for (NightSkipped l : listeners) l.onNightSkipped(from, to);
+            });
+
+    /** A statistics packet carried a TIME_SINCE_REST value. */
+    public static final Event<StatsSynced> STATS_SYNCED = EventFactory.createArrayBacked(StatsSynced.class,
+            listeners -> timeSinceRest -> {
+                for (StatsSynced l : listeners) l.onStatsSynced(timeSinceRest);
+            });
+
+    private InsomniaReminderEvents() {
+    }
+
+    @FunctionalInterface
+    public interface TimeJumped {
+        void onTimeJumped(long fromTimeOfDay, long toTimeOfDay);
+    }
+
+    @FunctionalInterface
+    public interface RestReset {
+        void onRestReset(int previous, int current);
+    }
+
+    @FunctionalInterface
+    public interface NightSkipped {
+        void onNightSkipped(long fromTimeOfDay, long toTimeOfDay);
+    }
+
+    @FunctionalInterface
+    public interface StatsSynced {
+        void onStatsSynced(int timeSinceRest);
+    }
+}
@@ -0,0 +1,204 @@
+package net.nullstorm.insomnia_reminder;
+
+import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.entity.event.v1.EntitySleepEvents;
+import net.fabricmc.fabric.api.entity.event.v1.ServerPlayerEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.network.packet.s2c.play.SubtitleS2CPacket;
+import net.minecraft.network.packet.s2c.play.TitleFadeS2CPacket;
+import net.minecraft.network.packet.s2c.play.TitleS2CPacket;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.sound.SoundCategory;
+import net.minecraft.stat.Stats;
+import net.minecraft.text.Text;
+import net.minecraft.world.GameRules;
+import net.minecraft.world.World;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Server side of the mod (main entrypoint, so it also runs inside the integrated server).
+ * <ul>
+ *     <li>Server mode: evaluates the same morning/night rules for every online player without the
+ *     client mod and sends them the messages (chat and/or title packets) and vanilla sounds.
+ *     Turn it off with {@code serverReminders}.</li>
+ *     <li>Companion: players with the client mod get exact {@link SleepEventPayload}s instead,
+ *     and their client shows its own reminders.</li>
+ * </ul>
+ * Uses the server's own config/insomnia_reminder.json.
+ */
+public class InsomniaReminderServer implements ModInitializer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("insomnia_reminder");
+
+    // Server packs are always compiled for this language; players' locales aren't known up front.
+    private static final String SERVER_LANGUAGE = "en_us";
+
+    private static final Random RANDOM = new Random();
+
+    // Loaded once per server start; pools are compiled only when server reminders are on.
+    private static volatile ConfigSnapshot config = ConfigSnapshot.DEFAULTS;
+    private static final LiteralTextCache TEXTS = new LiteralTextCache(512);
+    private static final ServerTemplateValues TEMPLATE_VALUES = new ServerTemplateValues();
+    private static final StringBuilder RENDER_BUFFER = new StringBuilder(128);
+
+    private static final ServerReminderTracker TRACKER = new ServerReminderTracker(new ServerReminderTracker.Listener() {
+        @Override
+        public void onReminder(ServerPlayerEntity player, boolean morning, long day) {
+            remind(player, morning, day);
+        }
+
+        @Override
+        public void onPhantomThreshold(ServerPlayerEntity player, int timeSinceRest) {
+            send(player, SleepEventPayload.PHANTOM_THRESHOLD, player.getWorld().getTimeOfDay(), timeSinceRest);
+        }
+    });
+    private static boolean active;
+
+    // Overworld time and world age at the end of the previous server tick, for spotting skipped nights.
+    private static long lastOverworldTime = -1;
+    private static long lastOverworldAge;
+
+    @Override
+    public void onInitialize() {
+        // Both sides need the payload type; the client registers its receiver in InsomniaReminderClient.
+        PayloadTypeRegistry.playS2C().register(SleepEventPayload.ID, SleepEventPayload.CODEC);
+
+        ServerLifecycleEvents.SERVER_STARTING.register(InsomniaReminderServer::onServerStarting);
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            TRACKER.clear();
+            active = false;
+            lastOverworldTime = -1;
+        });
+
+        // Fabric knows the client's channels by the time the player joins.
+        ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> {
+            if (!active) return;
+            ServerPlayerEntity player = handler.player;
+            boolean clientMod = ServerPlayNetworking.canSend(player, SleepEventPayload.ID);
+            TRACKER.add(player, clientMod);
+            if (clientMod) {
+                int rest = player.getStatHandler().getStat(Stats.CUSTOM.getOrCreateStat(Stats.TIME_SINCE_REST));
+                send(player, SleepEventPayload.HELLO, player.getWorld().getTimeOfDay(), rest);
+            }
+        });
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> TRACKER.remove(handler.player));
+        ServerPlayerEvents.AFTER_RESPAWN.register((oldPlayer, newPlayer, alive) -> {
+            if (active) TRACKER.add(newPlayer, TRACKER.hasClientMod(oldPlayer));
+        });
+
+        EntitySleepEvents.STOP_SLEEPING.register((entity, sleepingPos) -> {
+            if (active && entity instanceof ServerPlayerEntity player && TRACKER.hasClientMod(player)) {
+                send(player, SleepEventPayload.WOKE, player.getWorld().getTimeOfDay(), 0);
+            }
+        });
+
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            if (!active) return;
+            checkNightSkipped(server);
+            TRACKER.tick();
+        });
+    }
+
+    private static void onServerStarting(MinecraftServer server) {
+        Path configDir = FabricLoader.getInstance().getConfigDir();
+        InsomniaReminderConfig loaded = InsomniaReminderConfig.load(configDir);
+        MessagePools pools = loaded.enabled && loaded.serverReminders
+                ? MessagePools.compile(loaded, DefaultMessages.builtIn(SERVER_LANGUAGE), MessagePacks.scan(MessagePacks.packDir(configDir)), SERVER_LANGUAGE)
+                : ConfigSnapshot.DEFAULTS.pools;
+        config = ConfigSnapshot.of(loaded, pools, ReminderRules.EMPTY);
+        active = config.enabled;
+        if (!active) return;
+
+        if (config.serverReminders) LOGGER.info("[Insomnia Reminder] Server reminders enabled");
+        TRACKER.configure(config.morningEnabled, config.nightEnabled, config.nightAlwaysPlays, config.serverReminders);
+    }
+
+    // A forward step from night to morning that the world age doesn't account for is a skipped night.
+    private static void checkNightSkipped(MinecraftServer server) {
+        ServerWorld overworld = server.getOverworld();
+        long time = overworld.getTimeOfDay();
+        long age = overworld.getTime();
+        long from = lastOverworldTime;
+        long fromAge = lastOverworldAge;
+        lastOverworldTime = time;
+        lastOverworldAge = age;
+        if (from == -1) return;
+        boolean daylightCycle = overworld.getGameRules().getBoolean(GameRules.DO_DAYLIGHT_CYCLE);
+        if (ReminderStateMachine.timeJump(time - from, age - fromAge, daylightCycle) <= ReminderStateMachine.JUMP_TOLERANCE_TICKS) return;
+        if (Math.floorMod(from, ReminderScheduler.DAY_TICKS) < 12000) return;
+        if (Math.floorMod(time, ReminderScheduler.DAY_TICKS) > ReminderStateMachine.SLEEP_WAKE_GRACE_TICKS) return;
+
+        for (ServerPlayerEntity player : server.getPlayerManager().getPlayerList()) {
+            if (player.getWorld().getRegistryKey() == World.OVERWORLD && TRACKER.hasClientMod(player)) {
+                send(player, SleepEventPayload.NIGHT_SKIPPED, from, time);
+            }
+        }
+    }
+
+    private static void send(ServerPlayerEntity player, byte type, long worldTime, long value) {
+        ServerPlayNetworking.send(player, new SleepEventPayload(type, worldTime, value));
+    }
+
+    private static void remind(ServerPlayerEntity player, boolean morning, long day) {
+        ReminderMetrics.reminderFired();
+        ReminderJfrEvents.reminderFired(morning, day);
+
+        ConfigSnapshot cfg = config;
+        if (cfg.volume > 0f) {
+            ReminderMetrics.soundPlay();
+            player.playSoundToPlayer(morning ? ReminderSounds.VANILLA_MORNING : ReminderSounds.VANILLA_NIGHT,
+                    SoundCategory.MASTER, cfg.volume, 1.0f);
+        }
+
+        MessageTemplate template = cfg.pools.choose(morning, cfg.ultraRareChancePercent, RANDOM);
+        if (template == null) return;
+        TEMPLATE_VALUES.player = player;
+        String msg = template.render(TEMPLATE_VALUES, RENDER_BUFFER);
+        TEMPLATE_VALUES.player = null;
+        if (msg.isBlank()) return;
+
+        Text text = TEXTS.get(msg);
+
+        if (cfg.showsChat) {
+            player.sendMessage(text, false);
+        }
+        if (cfg.showsScreen) {
+            // Players without the client mod only have the vanilla title: empty title, message as
+            // subtitle. The server can't measure text, so long messages aren't wrapped.
+            player.networkHandler.sendPacket(new TitleFadeS2CPacket(5, 45, 10));
+            player.networkHandler.sendPacket(new SubtitleS2CPacket(text));
+            player.networkHandler.sendPacket(new TitleS2CPacket(Text.empty()));
+        }
+    }
+
+    // Server thread only; player is set around each render.
+    private static final class ServerTemplateValues implements MessageTemplate.Values {
+        ServerPlayerEntity player;
+
+        @Override
+        public String playerName() {
+            return player.getName().getString();
+        }
+
+        @Override
+        public long worldTime() {
+            return player.getWorld().getTimeOfDay();
+        }
+
+        @Override
+        public int timeSinceRest() {
+            return player.getStatHandler().getStat(Stats.CUSTOM.getOrCreateStat(Stats.TIME_SINCE_REST));
+        }
+    }
+}
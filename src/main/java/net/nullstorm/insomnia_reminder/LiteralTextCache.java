@@ -0,0 +1,34 @@
+package net.nullstorm.insomnia_reminder;
+
+import net.minecraft.text.Text;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable literal {@link Text} components for reminder strings, so showing the same
+ * message again doesn't build a new component. Bounded LRU; confined to one thread
+ * (the client and the server keep their own).
+ */
+final class LiteralTextCache {
+
+    private final LinkedHashMap<String, Text> texts;
+
+    LiteralTextCache(int maxEntries) {
+        this.texts = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Text> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    Text get(String s) {
+        Text t = texts.get(s);
+        if (t == null) {
+            t = Text.literal(s);
+            texts.put(s, t);
+        }
+        return t;
+    }
+}
@@ -0,0 +1,63 @@
+package net.nullstorm.insomnia_reminder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Appends every delivered reminder to {@code config/insomnia_reminder/reminders.log}, one line each.
+ * Runs off-thread. The file is moved to {@code reminders.log.old} once it reaches {@link #MAX_BYTES}.
+ */
+final class LogFileSink implements NotificationSink {
+
+    static final String FILE_NAME = "reminders.log";
+    static final long MAX_BYTES = 1024 * 1024;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("insomnia_reminder");
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final Path file;
+    private final BooleanSupplier enabled;
+
+    LogFileSink(Path configDir, BooleanSupplier enabled) {
+        this.file = configDir.resolve(MessagePacks.DIR_NAME).resolve(FILE_NAME);
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean offThread() {
+        return true;
+    }
+
+    @Override
+    public void deliver(ReminderNotification n) {
+        if (!enabled.getAsBoolean()) return;
+
+        String line = TIMESTAMP.format(LocalDateTime.now()) + " " + n.kind()
+                + " day=" + Math.floorDiv(n.worldTime(), ReminderScheduler.DAY_TICKS)
+                + (n.merged() > 1 ? " merged=" + n.merged() : "")
+                + (n.message() != null ? " " + n.message() : "") + System.lineSeparator();
+        try {
+            Files.createDirectories(file.getParent());
+            if (Files.exists(file) && Files.size(file) >= MAX_BYTES) {
+                Files.move(file, file.resolveSibling(FILE_NAME + ".old"), StandardCopyOption.REPLACE_EXISTING);
+            }
+            try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                w.write(line);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("[Insomnia Reminder] Could not write {}", file, e);
+        }
+    }
+}
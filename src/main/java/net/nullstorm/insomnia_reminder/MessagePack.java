@@ -0,0 +1,244 @@
+package net.nullstorm.insomnia_reminder;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * An external message pack, indexed by byte offset.
+ * <p>
+ * File format (UTF-8, one message per line, {@code #} starts a comment):
+ * <pre>
+ * category|weight|locale|text
+ * morning|10|*|Good morning from the server!
+ * night|5|de_de|Gute Nacht!
+ * </pre>
+ * Categories: {@code morning}, {@code night}, {@code ultra_rare_morning}, {@code ultra_rare_night}.
+ * Locale is {@code *} for every language, a full tag ({@code en_us}) or a language prefix ({@code en}).
+ * <p>
+ * Indexing keeps only offset, length, weight, category and locale per entry. An entry's text is
+ * read only when it's drawn, ahead of time on the pack reader thread (see {@link MessageSampler}).
+ */
+final class MessagePack {
+
+    static final byte MORNING = 0;
+    static final byte NIGHT = 1;
+    static final byte ULTRA_RARE_MORNING = 2;
+    static final byte ULTRA_RARE_NIGHT = 3;
+
+    // Weights above this are clamped, same range as the config screen.
+    private static final int MAX_WEIGHT = 100;
+
+    private final Path path;
+    private final long fileSize;
+    private final long lastModified;
+
+    private final int count;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final int[] weights;
+    private final byte[] categories;
+    private final short[] localeIds;
+    private final String[] locales;
+
+    private MessagePack(Path path, long fileSize, long lastModified, int count, long[] offsets, int[] lengths,
+                        int[] weights, byte[] categories, short[] localeIds, String[] locales) {
+        this.path = path;
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.count = count;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.weights = weights;
+        this.categories = categories;
+        this.localeIds = localeIds;
+        this.locales = locales;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    int size() {
+        return count;
+    }
+
+    byte category(int i) {
+        return categories[i];
+    }
+
+    int weight(int i) {
+        return weights[i];
+    }
+
+    /** True if the entry applies to the given language code ({@code *}, exact tag or language prefix). */
+    boolean matchesLocale(int i, String locale) {
+        String tag = locales[localeIds[i]];
+        if (tag.equals("*")) return true;
+        if (locale == null || locale.isEmpty()) return false;
+        if (tag.equalsIgnoreCase(locale)) return true;
+        return locale.length() > tag.length()
+                && locale.charAt(tag.length()) == '_'
+                && locale.regionMatches(true, 0, tag, 0, tag.length());
+    }
+
+    /**
+     * Reads and decodes one entry. Returns null if the file changed since it was indexed (the offset
+     * would point into other text, or cut a UTF-8 sequence), can't be read, or the entry is blank.
+     */
+    String read(int i) {
+        if (isStale()) return null;
+        ByteBuffer buf = ByteBuffer.allocate(lengths[i]);
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (buf.hasRemaining()) {
+                if (ch.read(buf, offsets[i] + buf.position()) < 0) return null;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        // Edited while it was being read.
+        if (isStale()) return null;
+        String s = new String(buf.array(), 0, lengths[i], StandardCharsets.UTF_8).trim();
+        return s.isEmpty() ? null : s;
+    }
+
+    /** True if the file on disk no longer matches the index. */
+    boolean isStale() {
+        try {
+            return Files.size(path) != fileSize || Files.getLastModifiedTime(path).toMillis() != lastModified;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /** Scans the file once and builds the offset index. Message text is never decoded here. */
+    static MessagePack index(Path path) throws IOException {
+        long fileSize = Files.size(path);
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+
+        int cap = 64;
+        long[] offsets = new long[cap];
+        int[] lengths = new int[cap];
+        int[] weights = new int[cap];
+        byte[] categories = new byte[cap];
+        short[] localeIds = new short[cap];
+        String[] locales = new String[4];
+        int localeCount = 0;
+        int count = 0;
+
+        byte[] line = new byte[256];
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path), 64 * 1024)) {
+            long lineStart = 0;
+            long pos = 0;
+            int len = 0;
+            boolean eof = false;
+            while (!eof) {
+                int b = in.read();
+                if (b < 0) eof = true;
+                else pos++;
+
+                if (b >= 0 && b != '\n') {
+                    if (len == line.length) line = Arrays.copyOf(line, len * 2);
+                    line[len++] = (byte) b;
+                    continue;
+                }
+
+                // ---- one complete line in line[0..len) starting at lineStart ----
+                int end = len;
+                if (end > 0 && line[end - 1] == '\r') end--;
+                int start = 0;
+                if (lineStart == 0 && end >= 3
+                        && (line[0] & 0xFF) == 0xEF && (line[1] & 0xFF) == 0xBB && (line[2] & 0xFF) == 0xBF) {
+                    start = 3; // UTF-8 BOM
+                }
+
+                int p1 = indexOf(line, '|', start, end);
+                int p2 = p1 < 0 ? -1 : indexOf(line, '|', p1 + 1, end);
+                int p3 = p2 < 0 ? -1 : indexOf(line, '|', p2 + 1, end);
+
+                if (p3 >= 0 && line[start] != '#') {
+                    byte cat = parseCategory(line, start, p1);
+                    int weight = Math.min(MAX_WEIGHT, parseWeight(line, p1 + 1, p2));
+                    int textLen = end - (p3 + 1);
+                    if (cat >= 0 && weight > 0 && textLen > 0) {
+                        String tag = new String(line, p2 + 1, p3 - (p2 + 1), StandardCharsets.US_ASCII).trim();
+                        if (tag.isEmpty()) tag = "*";
+                        int localeId = -1;
+                        for (int k = 0; k < localeCount; k++) {
+                            if (locales[k].equalsIgnoreCase(tag)) {
+                                localeId = k;
+                                break;
+                            }
+                        }
+                        if (localeId < 0) {
+                            if (localeCount == locales.length) locales = Arrays.copyOf(locales, localeCount * 2);
+                            locales[localeCount] = tag;
+                            localeId = localeCount++;
+                        }
+
+                        if (count == cap) {
+                            cap *= 2;
+                            offsets = Arrays.copyOf(offsets, cap);
+                            lengths = Arrays.copyOf(lengths, cap);
+                            weights = Arrays.copyOf(weights, cap);
+                            categories = Arrays.copyOf(categories, cap);
+                            localeIds = Arrays.copyOf(localeIds, cap);
+                        }
+                        offsets[count] = lineStart + p3 + 1;
+                        lengths[count] = textLen;
+                        weights[count] = weight;
+                        categories[count] = cat;
+                        localeIds[count] = (short) localeId;
+                        count++;
+                    }
+                }
+
+                lineStart = pos;
+                len = 0;
+            }
+        }
+
+        return new MessagePack(path, fileSize, lastModified, count,
+                Arrays.copyOf(offsets, count), Arrays.copyOf(lengths, count), Arrays.copyOf(weights, count),
+                Arrays.copyOf(categories, count), Arrays.copyOf(localeIds, count), Arrays.copyOf(locales, localeCount));
+    }
+
+    private static int indexOf(byte[] a, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (a[i] == c) return i;
+        }
+        return -1;
+    }
+
+    private static byte parseCategory(byte[] a, int from, int to) {
+        String s = new String(a, from, to - from, StandardCharsets.US_ASCII).trim();
+        return switch (s.toLowerCase(Locale.ROOT)) {
+            case "morning" -> MORNING;
+            case "night" -> NIGHT;
+            case "ultra_rare_morning" -> ULTRA_RARE_MORNING;
+            case "ultra_rare_night" -> ULTRA_RARE_NIGHT;
+            default -> -1;
+        };
+    }
+
+    private static int parseWeight(byte[] a, int from, int to) {
+        int v = 0;
+        boolean any = false;
+        for (int i = from; i < to; i++) {
+            byte b = a[i];
+            if (b == ' ' || b == '\t') continue;
+            if (b < '0' || b > '9') return 0;
+            v = Math.min(v * 10 + (b - '0'), 1_000_000);
+            any = true;
+        }
+        return any ? v : 0;
+    }
+}
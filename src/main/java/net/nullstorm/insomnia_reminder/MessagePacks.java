@@ -0,0 +1,63 @@
+package net.nullstorm.insomnia_reminder;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the message packs in {@code config/insomnia_reminder/packs/*.txt}.
+ * Indexes are cached and only rebuilt when a pack file changes on disk,
+ * so recompiling the pools after a config save doesn't re-scan large packs.
+ */
+final class MessagePacks {
+
+    static final String DIR_NAME = "insomnia_reminder";
+    static final String PACKS_DIR_NAME = "packs";
+    private static final String GLOB = "*.txt";
+
+    private static final Map<Path, MessagePack> CACHE = new HashMap<>();
+
+    private MessagePacks() {
+    }
+
+    static Path packDir(Path configDir) {
+        return configDir.resolve(DIR_NAME).resolve(PACKS_DIR_NAME);
+    }
+
+    /** Returns the indexed packs in the directory; unreadable packs are skipped. */
+    static synchronized List<MessagePack> scan(Path packDir) {
+        List<MessagePack> out = new ArrayList<>();
+        if (packDir == null || !Files.isDirectory(packDir)) {
+            CACHE.clear();
+            return out;
+        }
+
+        Map<Path, MessagePack> seen = new HashMap<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(packDir, GLOB)) {
+            for (Path p : ds) {
+                MessagePack pack = CACHE.get(p);
+                if (pack == null || pack.isStale()) {
+                    try {
+                        pack = MessagePack.index(p);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                }
+                seen.put(p, pack);
+            }
+        } catch (IOException ignored) {
+        }
+
+        CACHE.clear();
+        CACHE.putAll(seen);
+
+        // Stable order so the same packs always compile to the same tables.
+        seen.keySet().stream().sorted().forEach(p -> out.add(seen.get(p)));
+        return out;
+    }
+}
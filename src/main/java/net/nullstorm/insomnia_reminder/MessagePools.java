@@ -0,0 +1,131 @@
+package net.nullstorm.insomnia_reminder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Precompiled message pools (morning, night, ultra-rare morning/night).
+ * Compiled once from the config at startup and again whenever the config is saved or the
+ * active language's {@link DefaultMessages} change, so the tick never builds lists or
+ * re-reads the custom message fields.
+ * Message pack entries count as custom messages. Only their index is used here; the text of an
+ * entry is read when it's drawn (see {@link MessageSampler}), with the built-in messages as the
+ * fallback while it isn't ready.
+ */
+final class MessagePools {
+
+    // Weight given to each built-in message when mixed with custom ones.
+    static final int DEFAULT_WEIGHT = 10;
+
+    private final MessageSampler morning;
+    private final MessageSampler night;
+    private final MessageSampler ultraRareMorning;
+    private final MessageSampler ultraRareNight;
+
+    private MessagePools(MessageSampler morning, MessageSampler night,
+                         MessageSampler ultraRareMorning, MessageSampler ultraRareNight) {
+        this.morning = morning;
+        this.night = night;
+        this.ultraRareMorning = ultraRareMorning;
+        this.ultraRareNight = ultraRareNight;
+    }
+
+    MessageSampler regular(boolean morning) {
+        return morning ? this.morning : this.night;
+    }
+
+    MessageSampler ultraRare(boolean morning) {
+        return morning ? ultraRareMorning : ultraRareNight;
+    }
+
+    /** Draws a reminder message, from the ultra-rare pool if the chance (0-100) hits. Null if the pool is empty. */
+    MessageTemplate choose(boolean morning, int ultraRareChancePercent, Random random) {
+        ReminderMetrics.samplerDraw();
+
+        // ultra-rare
+        if (ultraRareChancePercent > 0 && random.nextInt(100) < ultraRareChancePercent) {
+            return ultraRare(morning).next(random);
+        }
+
+        return regular(morning).next(random);
+    }
+
+    /** All messages without placeholders of every pool, except pack entries (packs can be large). */
+    List<String> inlineMessages() {
+        List<String> out = new ArrayList<>();
+        morning.collectInline(out);
+        night.collectInline(out);
+        ultraRareMorning.collectInline(out);
+        ultraRareNight.collectInline(out);
+        return out;
+    }
+
+    static MessagePools compile(InsomniaReminderConfig cfg) {
+        return compile(cfg, DefaultMessages.NONE, List.of(), null);
+    }
+
+    /**
+     * @param defaults built-in messages of the active language
+     * @param packs    indexed message packs (only used when message packs are enabled)
+     * @param locale   active language code, used to filter pack entries by locale tag
+     */
+    static MessagePools compile(InsomniaReminderConfig cfg, DefaultMessages defaults, List<MessagePack> packs, String locale) {
+        List<MessagePack> p = (cfg != null && cfg.messagePacksEnabled && packs != null) ? packs : List.of();
+        return new MessagePools(
+                compileRegular(cfg, defaults.morning(), p, locale, true),
+                compileRegular(cfg, defaults.night(), p, locale, false),
+                compileUltraRare(defaults.ultraRareMorning(), p, locale, MessagePack.ULTRA_RARE_MORNING),
+                compileUltraRare(defaults.ultraRareNight(), p, locale, MessagePack.ULTRA_RARE_NIGHT));
+    }
+
+    private static MessageSampler compileUltraRare(String[] defaults, List<MessagePack> packs, String locale, byte category) {
+        MessageSampler builtIn = MessageSampler.builder().addAll(defaults, 1).build();
+        if (packs.isEmpty()) return builtIn;
+        return addPacked(MessageSampler.builder().addAll(defaults, 1).fallback(builtIn), packs, locale, category).build();
+    }
+
+    // weighted custom vs defaults
+    private static MessageSampler compileRegular(InsomniaReminderConfig cfg, String[] defaults, List<MessagePack> packs,
+                                                 String locale, boolean morning) {
+        MessageSampler builtIn = MessageSampler.builder().addAll(defaults, DEFAULT_WEIGHT).build();
+        boolean inlineCustom = cfg != null && cfg.customMessagesEnabled;
+        if (!inlineCustom && packs.isEmpty()) return builtIn;
+
+        MessageSampler customOnly = addCustom(MessageSampler.builder().fallback(builtIn), cfg, packs, locale, inlineCustom, morning).build();
+        if (customOnly.isEmpty()) return builtIn;
+        if (!cfg.includeDefaultMessagesWhenCustomPresent) return customOnly;
+
+        MessageSampler.Builder b = MessageSampler.builder().addAll(defaults, DEFAULT_WEIGHT).fallback(builtIn);
+        return addCustom(b, cfg, packs, locale, inlineCustom, morning).build();
+    }
+
+    private static MessageSampler.Builder addCustom(MessageSampler.Builder b, InsomniaReminderConfig cfg,
+                                                    List<MessagePack> packs, String locale,
+                                                    boolean inline, boolean morning) {
+        if (inline && morning) {
+            b.add(cfg.customMorning1, cfg.customMorning1Weight);
+            b.add(cfg.customMorning2, cfg.customMorning2Weight);
+            b.add(cfg.customMorning3, cfg.customMorning3Weight);
+            b.add(cfg.customMorning4, cfg.customMorning4Weight);
+            b.add(cfg.customMorning5, cfg.customMorning5Weight);
+        } else if (inline) {
+            b.add(cfg.customNight1, cfg.customNight1Weight);
+            b.add(cfg.customNight2, cfg.customNight2Weight);
+            b.add(cfg.customNight3, cfg.customNight3Weight);
+            b.add(cfg.customNight4, cfg.customNight4Weight);
+            b.add(cfg.customNight5, cfg.customNight5Weight);
+        }
+        return addPacked(b, packs, locale, morning ? MessagePack.MORNING : MessagePack.NIGHT);
+    }
+
+    // Only references the matching entries; nothing is read from disk here.
+    private static MessageSampler.Builder addPacked(MessageSampler.Builder b, List<MessagePack> packs, String locale, byte category) {
+        for (MessagePack pack : packs) {
+            for (int i = 0, size = pack.size(); i < size; i++) {
+                if (pack.category(i) == category && pack.matchesLocale(i, locale)) b.addPacked(pack, i, pack.weight(i));
+            }
+        }
+        return b;
+    }
+}
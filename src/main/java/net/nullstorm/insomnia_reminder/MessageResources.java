@@ -0,0 +1,95 @@
+package net.nullstorm.insomnia_reminder;
+
+import net.fabricmc.fabric.api.resource.SimpleResourceReloadListener;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.resource.Resource;
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.util.Identifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Loads the built-in messages of the active language on every resource reload (startup, F3+T,
+ * resource pack or language change), falling back to {@link DefaultMessages#FALLBACK_LANGUAGE}.
+ * Only that one language is held; the previous one is dropped on a switch. Reading, hashing and
+ * parsing run in the load stage and change nothing; the apply stage swaps the result in and tells
+ * the listener. When the content hash matches what's loaded, nothing is parsed and the listener
+ * isn't told, so the compiled pools are kept.
+ */
+final class MessageResources implements SimpleResourceReloadListener<DefaultMessages> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("insomnia_reminder");
+    private static final Identifier ID = Identifier.of("insomnia_reminder", "messages");
+
+    private final Consumer<DefaultMessages> onChange;
+    private volatile DefaultMessages current = DefaultMessages.NONE;
+
+    /** {@code onChange} runs in the reload's apply stage whenever a different set of messages is loaded. */
+    MessageResources(Consumer<DefaultMessages> onChange) {
+        this.onChange = onChange;
+    }
+
+    DefaultMessages current() {
+        return current;
+    }
+
+    @Override
+    public Identifier getFabricId() {
+        return ID;
+    }
+
+    @Override
+    public CompletableFuture<DefaultMessages> load(ResourceManager manager, Executor executor) {
+        String language = activeLanguage();
+        return CompletableFuture.supplyAsync(() -> read(manager, language), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> apply(DefaultMessages data, ResourceManager manager, Executor executor) {
+        return CompletableFuture.runAsync(() -> {
+            if (data == current) return;
+            current = data;
+            onChange.accept(data);
+        }, executor);
+    }
+
+    private DefaultMessages read(ResourceManager manager, String language) {
+        List<byte[]> layers = layers(manager, language);
+        if (layers.isEmpty() && !language.equals(DefaultMessages.FALLBACK_LANGUAGE)) {
+            language = DefaultMessages.FALLBACK_LANGUAGE;
+            layers = layers(manager, language);
+        }
+        long hash = DefaultMessages.hash(language, layers);
+        DefaultMessages loaded = current;
+        if (loaded.language().equals(language) && loaded.hash() == hash) return loaded;
+        return DefaultMessages.parse(language, hash, layers);
+    }
+
+    // Every pack's copy of the file, lowest priority first.
+    private static List<byte[]> layers(ResourceManager manager, String language) {
+        Identifier id = Identifier.of("insomnia_reminder", DefaultMessages.path(language));
+        List<byte[]> out = new ArrayList<>();
+        for (Resource resource : manager.getAllResources(id)) {
+            try (InputStream in = resource.getInputStream()) {
+                out.add(in.readAllBytes());
+            } catch (IOException e) {
+                LOGGER.warn("[Insomnia Reminder] Could not read {}", id, e);
+            }
+        }
+        return out;
+    }
+
+    private static String activeLanguage() {
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (client == null || client.getLanguageManager() == null) return DefaultMessages.FALLBACK_LANGUAGE;
+        return client.getLanguageManager().getLanguage();
+    }
+}
@@ -0,0 +1,263 @@
+package net.nullstorm.insomnia_reminder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Immutable weighted message sampler (Vose alias table).
+ * Built once per pool when the config changes; every draw is O(1) and allocation-free,
+ * no matter how many weighted entries the pool holds.
+ * <p>
+ * Inline messages are compiled to {@link MessageTemplate}s when the sampler is built.
+ * {@link MessagePack} entries are kept as (pack, entry) references and only the drawn one is read:
+ * a sampler with pack entries draws its next message ahead of time on the pack reader thread, and
+ * {@link #next} hands that one out and queues the next prefetch. If none is ready (still reading,
+ * or the pack changed on disk), the draw falls back to the built-in messages. Either way a draw
+ * never does I/O. A prefetched pack message without placeholders is also handed to the
+ * {@link #onPrefetched} listener, so it can be laid out before it's shown.
+ */
+final class MessageSampler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("insomnia_reminder");
+
+    static final MessageSampler EMPTY = new MessageSampler(new MessageTemplate[0], null, null, new double[0], new int[0], null);
+
+    private static ExecutorService reader;
+    // Draws made ahead of time; only used on the reader thread.
+    private static final Random PREFETCH_RANDOM = new Random();
+    private static volatile Consumer<String> prefetchListener;
+
+    // Null at pack entries.
+    private final MessageTemplate[] messages;
+    // Null if the pool has no pack entries; otherwise the pack of each entry (null at inline ones).
+    private final MessagePack[] packs;
+    private final int[] packEntries;
+    private final double[] prob;
+    private final int[] alias;
+
+    // Pack pools only: the prefetched next draw, and what to hand out when it isn't ready.
+    private final MessageSampler fallback;
+    private final AtomicReference<MessageTemplate> prefetched;
+    private final AtomicBoolean prefetching;
+    private final Runnable prefetch;
+    private volatile boolean warnedStale;
+
+    private MessageSampler(MessageTemplate[] messages, MessagePack[] packs, int[] packEntries,
+                           double[] prob, int[] alias, MessageSampler fallback) {
+        this.messages = messages;
+        this.packs = packs;
+        this.packEntries = packEntries;
+        this.prob = prob;
+        this.alias = alias;
+        this.fallback = fallback != null ? fallback : EMPTY;
+        this.prefetched = packs != null ? new AtomicReference<>() : null;
+        this.prefetching = packs != null ? new AtomicBoolean() : null;
+        this.prefetch = packs != null ? this::prefetchNow : null;
+    }
+
+    int size() {
+        return messages.length;
+    }
+
+    boolean isEmpty() {
+        return messages.length == 0;
+    }
+
+    /** Adds every message without placeholders that isn't from a pack to {@code out}. */
+    void collectInline(List<String> out) {
+        for (MessageTemplate msg : messages) {
+            if (msg != null && msg.isStatic()) out.add(msg.source());
+        }
+    }
+
+    /**
+     * Returns a random message according to the weights, or null if the pool is empty. In a pool
+     * with pack entries that's the prefetched draw, or a built-in message if it isn't ready.
+     */
+    MessageTemplate next(Random random) {
+        if (messages.length == 0) return null;
+        if (packs == null) return messages[index(random)];
+
+        MessageTemplate msg = prefetched.getAndSet(null);
+        prefetch();
+        return msg != null ? msg : fallback.next(random);
+    }
+
+    private int index(Random random) {
+        int i = random.nextInt(messages.length);
+        return random.nextDouble() < prob[i] ? i : alias[i];
+    }
+
+    /** Called on the pack reader thread with every prefetched pack message that has no placeholders. */
+    static void onPrefetched(Consumer<String> listener) {
+        prefetchListener = listener;
+    }
+
+    // Queues one prefetch unless one is queued or the next draw is already waiting.
+    private void prefetch() {
+        if (prefetched.get() == null && prefetching.compareAndSet(false, true)) reader().execute(prefetch);
+    }
+
+    // Reader thread.
+    private void prefetchNow() {
+        try {
+            int i = index(PREFETCH_RANDOM);
+            MessageTemplate msg = messages[i];
+            boolean packed = msg == null;
+            if (packed) {
+                String text = packs[i].read(packEntries[i]);
+                if (text == null) {
+                    // Changed since it was indexed; the next compile re-indexes it. Draws fall back until then.
+                    if (!warnedStale && packs[i].isStale()) {
+                        warnedStale = true;
+                        LOGGER.warn("[Insomnia Reminder] Message pack {} changed on disk; using built-in messages until it's reloaded",
+                                packs[i].path().getFileName());
+                    }
+                    return;
+                }
+                msg = MessageTemplate.compile(text);
+            }
+            prefetched.set(msg);
+            Consumer<String> listener = prefetchListener;
+            if (packed && listener != null && msg.isStatic()) listener.accept(msg.source());
+        } catch (RuntimeException e) {
+            LOGGER.warn("[Insomnia Reminder] Could not prefetch a pack message", e);
+        } finally {
+            prefetching.set(false);
+        }
+    }
+
+    private static synchronized ExecutorService reader() {
+        if (reader == null) {
+            reader = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "Insomnia Reminder pack reader");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return reader;
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    static final class Builder {
+        private MessageTemplate[] messages = new MessageTemplate[16];
+        private MessagePack[] packs;
+        private int[] packEntries;
+        private int[] weights = new int[16];
+        private int size;
+        private MessageSampler fallback;
+
+        /** Adds a message; blank messages and non-positive weights are ignored. */
+        Builder add(String msg, int weight) {
+            if (msg == null || weight <= 0) return this;
+            String v = msg.trim();
+            if (v.isEmpty()) return this;
+            messages[grow()] = MessageTemplate.compile(v);
+            weights[size++] = weight;
+            return this;
+        }
+
+        /** Adds a pack entry by reference; its text is only read if it's drawn. */
+        Builder addPacked(MessagePack pack, int entry, int weight) {
+            if (weight <= 0) return this;
+            if (packs == null) {
+                packs = new MessagePack[messages.length];
+                packEntries = new int[messages.length];
+            }
+            int i = grow();
+            packs[i] = pack;
+            packEntries[i] = entry;
+            weights[size++] = weight;
+            return this;
+        }
+
+        Builder addAll(String[] msgs, int weight) {
+            for (String s : msgs) add(s, weight);
+            return this;
+        }
+
+        /** What a pool with pack entries draws from while its next message isn't ready. */
+        Builder fallback(MessageSampler fallback) {
+            this.fallback = fallback;
+            return this;
+        }
+
+        // Index of the next entry, with room for it.
+        private int grow() {
+            if (size == messages.length) {
+                int cap = size * 2;
+                messages = Arrays.copyOf(messages, cap);
+                weights = Arrays.copyOf(weights, cap);
+                if (packs != null) {
+                    packs = Arrays.copyOf(packs, cap);
+                    packEntries = Arrays.copyOf(packEntries, cap);
+                }
+            }
+            return size;
+        }
+
+        MessageSampler build() {
+            int n = size;
+            if (n == 0) return EMPTY;
+
+            long total = 0;
+            for (int i = 0; i < n; i++) total += weights[i];
+
+            // Scaled probabilities: average bucket == 1.0
+            double[] scaled = new double[n];
+            for (int i = 0; i < n; i++) scaled[i] = (double) weights[i] * n / total;
+
+            double[] prob = new double[n];
+            int[] alias = new int[n];
+
+            // Work lists kept as plain int stacks to avoid boxing for large packs.
+            int[] small = new int[n];
+            int[] large = new int[n];
+            int smallTop = 0, largeTop = 0;
+            for (int i = 0; i < n; i++) {
+                if (scaled[i] < 1.0) small[smallTop++] = i;
+                else large[largeTop++] = i;
+            }
+
+            while (smallTop > 0 && largeTop > 0) {
+                int s = small[--smallTop];
+                int l = large[--largeTop];
+                prob[s] = scaled[s];
+                alias[s] = l;
+                scaled[l] = (scaled[l] + scaled[s]) - 1.0;
+                if (scaled[l] < 1.0) small[smallTop++] = l;
+                else large[largeTop++] = l;
+            }
+            // Leftovers are (numerically) exactly 1.0
+            while (largeTop > 0) {
+                int l = large[--largeTop];
+                prob[l] = 1.0;
+                alias[l] = l;
+            }
+            while (smallTop > 0) {
+                int s = small[--smallTop];
+                prob[s] = 1.0;
+                alias[s] = s;
+            }
+
+            if (packs == null) return new MessageSampler(Arrays.copyOf(messages, n), null, null, prob, alias, null);
+            MessageSampler sampler = new MessageSampler(Arrays.copyOf(messages, n), Arrays.copyOf(packs, n),
+                    Arrays.copyOf(packEntries, n), prob, alias, fallback);
+            // Have the first draw ready by the time a reminder fires.
+            sampler.prefetch();
+            return sampler;
+        }
+    }
+}
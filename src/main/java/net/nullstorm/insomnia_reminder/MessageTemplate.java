@@ -0,0 +1,140 @@
+package net.nullstorm.insomnia_reminder;
+
+/**
+ * A reminder message with {@code {placeholders}}, parsed once (when the pools or rules are
+ * compiled) into alternating literal and placeholder segments.
+ * <p>
+ * Placeholders: {@code {player}}, {@code {day}}, {@code {time}} (HH:MM), {@code {days_awake}} and
+ * {@code {phantom_eta}} (play time until phantoms can spawn, e.g. "12 min"). Anything else in
+ * braces is kept as written. Messages without placeholders render to their source string; the
+ * others are rendered into a caller-owned builder, and only the values they use are looked up.
+ */
+final class MessageTemplate {
+
+    static final int PLAYER = 0;
+    static final int DAY = 1;
+    static final int TIME = 2;
+    static final int DAYS_AWAKE = 3;
+    static final int PHANTOM_ETA = 4;
+
+    private static final String[] NAMES = {"player", "day", "time", "days_awake", "phantom_eta"};
+
+    private static final int[] NO_PLACEHOLDERS = new int[0];
+
+    /** Values for rendering; only called for placeholders the message contains. */
+    interface Values {
+        String playerName();
+
+        long worldTime();
+
+        int timeSinceRest();
+    }
+
+    private final String source;
+    // literals[i] comes before placeholders[i]; the last literal ends the message.
+    private final String[] literals;
+    private final int[] placeholders;
+
+    private MessageTemplate(String source, String[] literals, int[] placeholders) {
+        this.source = source;
+        this.literals = literals;
+        this.placeholders = placeholders;
+    }
+
+    static MessageTemplate compile(String source) {
+        if (source == null) throw new IllegalArgumentException("Message template source is null");
+        int open = source.indexOf('{');
+        if (open < 0) return new MessageTemplate(source, null, NO_PLACEHOLDERS);
+
+        // At most one placeholder per '{'
+        int max = 0;
+        for (int i = open; i < source.length(); i++) {
+            if (source.charAt(i) == '{') max++;
+        }
+        String[] literals = new String[max + 1];
+        int[] placeholders = new int[max];
+        int count = 0;
+
+        StringBuilder literal = new StringBuilder();
+        int pos = 0;
+        while (open >= 0) {
+            int close = source.indexOf('}', open + 1);
+            if (close < 0) break;
+            int id = placeholderId(source, open + 1, close);
+            if (id < 0) {
+                literal.append(source, pos, open + 1);
+                pos = open + 1;
+            } else {
+                literal.append(source, pos, open);
+                literals[count] = literal.toString();
+                placeholders[count++] = id;
+                literal.setLength(0);
+                pos = close + 1;
+            }
+            open = source.indexOf('{', pos);
+        }
+        if (count == 0) return new MessageTemplate(source, null, NO_PLACEHOLDERS);
+        literal.append(source, pos, source.length());
+        literals[count] = literal.toString();
+
+        String[] l = new String[count + 1];
+        int[] p = new int[count];
+        System.arraycopy(literals, 0, l, 0, count + 1);
+        System.arraycopy(placeholders, 0, p, 0, count);
+        return new MessageTemplate(source, l, p);
+    }
+
+    boolean isStatic() {
+        return placeholders.length == 0;
+    }
+
+    String source() {
+        return source;
+    }
+
+    /** The message with its placeholders filled in; {@code buffer} is cleared and reused. */
+    String render(Values values, StringBuilder buffer) {
+        if (placeholders.length == 0) return source;
+
+        buffer.setLength(0);
+        for (int i = 0; i < placeholders.length; i++) {
+            buffer.append(literals[i]);
+            appendValue(placeholders[i], values, buffer);
+        }
+        buffer.append(literals[placeholders.length]);
+        return buffer.toString();
+    }
+
+    private static void appendValue(int placeholder, Values values, StringBuilder out) {
+        switch (placeholder) {
+            case PLAYER -> out.append(values.playerName());
+            case DAY -> out.append(Math.floorDiv(values.worldTime(), ReminderScheduler.DAY_TICKS));
+            case TIME -> {
+                // Time of day 0 is 06:00
+                int timeOfDay = (int) Math.floorMod(values.worldTime(), ReminderScheduler.DAY_TICKS);
+                int hours = (timeOfDay / 1000 + 6) % 24;
+                int minutes = timeOfDay % 1000 * 60 / 1000;
+                if (hours < 10) out.append('0');
+                out.append(hours).append(':');
+                if (minutes < 10) out.append('0');
+                out.append(minutes);
+            }
+            case DAYS_AWAKE -> out.append(values.timeSinceRest() / (int) ReminderScheduler.DAY_TICKS);
+            case PHANTOM_ETA -> {
+                int left = Math.max(0, ReminderStateMachine.PHANTOM_THRESHOLD_TICKS - values.timeSinceRest());
+                out.append(left / 1200).append(" min");
+            }
+            default -> {
+            }
+        }
+    }
+
+    // Index into NAMES of source[from, to), -1 if it isn't a placeholder name.
+    private static int placeholderId(String source, int from, int to) {
+        int len = to - from;
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].length() == len && source.regionMatches(from, NAMES[i], 0, len)) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,50 @@
+package net.nullstorm.insomnia_reminder;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.font.TextRenderer;
+import net.minecraft.client.gui.DrawContext;
+import net.minecraft.client.render.RenderTickCounter;
+
+/**
+ * Small metrics block drawn at the bottom-left of the F3 screen when debug metrics are enabled.
+ * Lines are rebuilt once a second, not every frame.
+ */
+final class MetricsHud {
+
+    private static final int COLOR = 0xFFE0E0E0;
+    private static final long REFRESH_NANOS = 1_000_000_000L;
+
+    private static String[] lines = new String[0];
+    private static long lastRefresh;
+
+    private MetricsHud() {
+    }
+
+    static void render(DrawContext ctx, RenderTickCounter tickCounter) {
+        if (!ReminderMetrics.detailed()) return;
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (client == null || client.getDebugHud() == null || !client.getDebugHud().shouldShowDebugHud()) return;
+
+        long now = System.nanoTime();
+        if (now - lastRefresh > REFRESH_NANOS || lines.length == 0) {
+            lastRefresh = now;
+            lines = new String[]{
+                    String.format("[Insomnia Reminder] server ~%.1f TPS", ReminderMetrics.serverTps()),
+                    String.format("tick mean %dns p99<%dns max %dns",
+                            ReminderMetrics.tickNanosMean(), ReminderMetrics.tickPercentile(0.99), ReminderMetrics.tickNanosMax()),
+                    String.format("alloc %dB/tick draws %d fits %d sounds %d",
+                            ReminderMetrics.allocatedBytesPerTick(), ReminderMetrics.samplerDraws(),
+                            ReminderMetrics.textFits(), ReminderMetrics.soundPlays()),
+                    String.format("config load %.2fms save %.2fms",
+                            ReminderMetrics.lastConfigLoadNanos() / 1e6, ReminderMetrics.lastConfigSaveNanos() / 1e6)
+            };
+        }
+
+        TextRenderer tr = client.textRenderer;
+        int y = ctx.getScaledWindowHeight() - 2 - lines.length * (tr.fontHeight + 1);
+        for (String line : lines) {
+            ctx.drawTextWithShadow(tr, line, 2, y, COLOR);
+            y += tr.fontHeight + 1;
+        }
+    }
+}
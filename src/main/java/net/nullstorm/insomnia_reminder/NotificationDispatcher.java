@@ -0,0 +1,126 @@
+package net.nullstorm.insomnia_reminder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decouples firing a reminder from showing it. Triggers {@link #offer} notifications into a small
+ * bounded queue; {@link #dispatch} runs once per client tick and fans due ones out to the sinks.
+ * <p>
+ * A notification waits {@link #MERGE_NANOS} before delivery, and the same reminder is delivered at
+ * most once per {@link #MIN_INTERVAL_NANOS}; anything matching it that arrives in between (a burst
+ * of {@code /time set} jumps) is merged into it and only the newest is shown. When the queue is
+ * full the oldest entry is dropped. Off-thread sinks run on one daemon thread with a bounded
+ * backlog, so a slow file or network sink can neither block the game nor pile up memory.
+ * Queue and dispatch are client thread only.
+ */
+final class NotificationDispatcher {
+
+    static final int CAPACITY = 16;
+    static final long MERGE_NANOS = 250_000_000L;
+    static final long MIN_INTERVAL_NANOS = 3_000_000_000L;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("insomnia_reminder");
+
+    private final List<NotificationSink> sinks = new CopyOnWriteArrayList<>();
+
+    // FIFO; entries [0, size) are queued, each with the time it was first queued.
+    private final ReminderNotification[] queue = new ReminderNotification[CAPACITY];
+    private final long[] queuedAt = new long[CAPACITY];
+    private int size;
+
+    private final long[] lastDelivered = new long[ReminderNotification.Kind.values().length];
+
+    private ThreadPoolExecutor offThread;
+
+    NotificationDispatcher() {
+        // Long enough ago that the first notification of each kind isn't held back.
+        Arrays.fill(lastDelivered, Long.MIN_VALUE / 2);
+    }
+
+    void addSink(NotificationSink sink) {
+        sinks.add(sink);
+    }
+
+    void offer(ReminderNotification n) {
+        long now = System.nanoTime();
+        for (int i = 0; i < size; i++) {
+            if (queue[i].mergesWith(n)) {
+                queue[i] = queue[i].mergedInto(n);
+                ReminderMetrics.notificationMerged();
+                return;
+            }
+        }
+        if (size == CAPACITY) {
+            ReminderMetrics.notificationDropped();
+            removeAt(0);
+        }
+        queue[size] = n;
+        queuedAt[size] = now;
+        size++;
+    }
+
+    /** Delivers the queued notifications that are due. */
+    void dispatch(long now) {
+        for (int i = 0; i < size; ) {
+            ReminderNotification n = queue[i];
+            int kind = n.kind().ordinal();
+            if (now - queuedAt[i] < MERGE_NANOS || now - lastDelivered[kind] < MIN_INTERVAL_NANOS) {
+                i++;
+                continue;
+            }
+            removeAt(i);
+            lastDelivered[kind] = now;
+            deliver(n);
+        }
+    }
+
+    /** Drops everything queued (e.g. on disconnect). */
+    void clear() {
+        Arrays.fill(queue, 0, size, null);
+        size = 0;
+    }
+
+    private void deliver(ReminderNotification n) {
+        for (NotificationSink sink : sinks) {
+            if (sink.offThread()) {
+                offThread().execute(() -> deliverSafely(sink, n));
+            } else {
+                deliverSafely(sink, n);
+            }
+        }
+    }
+
+    // One broken sink must not keep the others from getting the reminder.
+    private static void deliverSafely(NotificationSink sink, ReminderNotification n) {
+        try {
+            sink.deliver(n);
+        } catch (RuntimeException e) {
+            LOGGER.error("[Insomnia Reminder] Notification sink {} failed", sink.getClass().getName(), e);
+        }
+    }
+
+    private void removeAt(int i) {
+        System.arraycopy(queue, i + 1, queue, i, size - i - 1);
+        System.arraycopy(queuedAt, i + 1, queuedAt, i, size - i - 1);
+        queue[--size] = null;
+    }
+
+    private ThreadPoolExecutor offThread() {
+        if (offThread == null) {
+            offThread = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(64), r -> {
+                Thread t = new Thread(r, "Insomnia Reminder notifications");
+                t.setDaemon(true);
+                return t;
+            }, new ThreadPoolExecutor.DiscardOldestPolicy());
+        }
+        return offThread;
+    }
+}
@@ -0,0 +1,19 @@
+package net.nullstorm.insomnia_reminder;
+
+/**
+ * Receives reminders from the notification pipeline (chat, on-screen overlay, toast, sound and the log file
+ * are built in). Add one with {@link InsomniaReminderClient#addNotificationSink}.
+ */
+@FunctionalInterface
+public interface NotificationSink {
+
+    void deliver(ReminderNotification notification);
+
+    /**
+     * True for sinks that may block (files, network): they run on a background thread and must not
+     * touch game state. Everything else runs on the client thread.
+     */
+    default boolean offThread() {
+        return false;
+    }
+}
@@ -0,0 +1,103 @@
+package net.nullstorm.insomnia_reminder;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.Timespan;
+
+/**
+ * Custom JFR events, so a player's own recording shows what the mod cost.
+ * Statistics are emitted periodically (default every 10 s) rather than per tick.
+ */
+final class ReminderJfrEvents {
+
+    private ReminderJfrEvents() {
+    }
+
+    static void register() {
+        FlightRecorder.addPeriodicEvent(Statistics.class, () -> {
+            Statistics e = new Statistics();
+            e.ticks = ReminderMetrics.ticks();
+            e.tickMean = ReminderMetrics.tickNanosMean();
+            e.tickP99 = ReminderMetrics.tickPercentile(0.99);
+            e.tickMax = ReminderMetrics.tickNanosMax();
+            e.allocatedPerTick = ReminderMetrics.allocatedBytesPerTick();
+            e.samplerDraws = ReminderMetrics.samplerDraws();
+            e.textFits = ReminderMetrics.textFits();
+            e.soundPlays = ReminderMetrics.soundPlays();
+            e.serverTps = ReminderMetrics.serverTps();
+            e.commit();
+        });
+    }
+
+    static void reminderFired(boolean morning, long dayIndex) {
+        ReminderFired e = new ReminderFired();
+        if (!e.isEnabled()) return;
+        e.morning = morning;
+        e.dayIndex = dayIndex;
+        e.commit();
+    }
+
+    @Name("insomnia_reminder.Statistics")
+    @Label("Insomnia Reminder Statistics")
+    @Category("Insomnia Reminder")
+    @Period("10 s")
+    public static final class Statistics extends Event {
+        @Label("Ticks")
+        long ticks;
+
+        @Label("Mean Tick Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long tickMean;
+
+        @Label("p99 Tick Time")
+        @Description("Upper bound of the log2 histogram bucket")
+        @Timespan(Timespan.NANOSECONDS)
+        long tickP99;
+
+        @Label("Max Tick Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long tickMax;
+
+        @Label("Allocated per Tick")
+        @DataAmount
+        long allocatedPerTick;
+
+        @Label("Sampler Draws")
+        long samplerDraws;
+
+        @Label("Text Fits")
+        long textFits;
+
+        @Label("Sound Plays")
+        long soundPlays;
+
+        @Label("Server TPS")
+        @Description("Estimated from world time packets")
+        double serverTps;
+    }
+
+    @Name("insomnia_reminder.ReminderFired")
+    @Label("Reminder Fired")
+    @Category("Insomnia Reminder")
+    public static final class ReminderFired extends Event {
+        @Label("Morning")
+        boolean morning;
+
+        @Label("Day")
+        long dayIndex;
+    }
+
+    @Name("insomnia_reminder.ConfigIo")
+    @Label("Config I/O")
+    @Category("Insomnia Reminder")
+    public static final class ConfigIo extends Event {
+        @Label("Operation")
+        String operation;
+    }
+}
@@ -0,0 +1,198 @@
+package net.nullstorm.insomnia_reminder;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cheap runtime counters for the mod.
+ * Tick latency goes into a log2 histogram of nanoseconds (no allocation, client thread only);
+ * per-tick allocation is only measured when detailed metrics are enabled in the config.
+ * Config I/O is recorded from whichever thread does it, and reminders, sounds and message draws
+ * also come from the integrated server thread in singleplayer, so those counters are thread-safe.
+ * <p>
+ * Exposed on the F3 screen (MetricsHud), as JFR events (ReminderJfrEvents) and as a periodic log summary.
+ */
+final class ReminderMetrics {
+
+    // Bucket i counts ticks that took [2^i, 2^(i+1)) ns; the last bucket is open-ended.
+    private static final int BUCKETS = 40;
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    // ---- client thread ----
+    private static final long[] tickBuckets = new long[BUCKETS];
+    private static long ticks;
+    private static long tickNanosTotal;
+    private static long tickNanosMax;
+    private static long allocatedBytes;
+    private static long allocationSamples;
+    private static long textFits;
+    private static long notificationsMerged;
+    private static long notificationsDropped;
+
+    // ---- any thread ----
+    private static final LongAdder samplerDraws = new LongAdder();
+    private static final LongAdder soundPlays = new LongAdder();
+    private static final LongAdder remindersFired = new LongAdder();
+    private static final AtomicLong configLoads = new AtomicLong();
+    private static final AtomicLong configLoadNanos = new AtomicLong();
+    private static final AtomicLong configSaves = new AtomicLong();
+    private static final AtomicLong configSaveNanos = new AtomicLong();
+
+    private static volatile boolean detailed;
+    private static volatile double serverTps = TickRateEstimator.NOMINAL_TPS;
+
+    private ReminderMetrics() {
+    }
+
+    static boolean detailed() {
+        return detailed;
+    }
+
+    static void setDetailed(boolean on) {
+        detailed = on && THREADS != null;
+    }
+
+    /** Bytes allocated so far by the calling thread, or -1 if unavailable. */
+    static long threadAllocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    static void recordTick(long nanos) {
+        int b = 63 - Long.numberOfLeadingZeros(Math.max(1, nanos));
+        tickBuckets[Math.min(b, BUCKETS - 1)]++;
+        ticks++;
+        tickNanosTotal += nanos;
+        if (nanos > tickNanosMax) tickNanosMax = nanos;
+    }
+
+    static void recordTickAllocation(long bytes) {
+        if (bytes < 0) return;
+        allocatedBytes += bytes;
+        allocationSamples++;
+    }
+
+    static void samplerDraw() {
+        samplerDraws.increment();
+    }
+
+    static void textFit() {
+        textFits++;
+    }
+
+    static void soundPlay() {
+        soundPlays.increment();
+    }
+
+    static void reminderFired() {
+        remindersFired.increment();
+    }
+
+    static void notificationMerged() {
+        notificationsMerged++;
+    }
+
+    static void notificationDropped() {
+        notificationsDropped++;
+    }
+
+    static void serverTps(double tps) {
+        serverTps = tps;
+    }
+
+    static double serverTps() {
+        return serverTps;
+    }
+
+    static void configLoaded(long nanos) {
+        configLoads.incrementAndGet();
+        configLoadNanos.set(nanos);
+    }
+
+    static void configSaved(long nanos) {
+        configSaves.incrementAndGet();
+        configSaveNanos.set(nanos);
+    }
+
+    /** Upper bound (ns) of the histogram bucket holding quantile {@code q} of tick latencies. */
+    static long tickPercentile(double q) {
+        if (ticks == 0) return 0;
+        long rank = (long) Math.ceil(q * ticks);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += tickBuckets[i];
+            if (seen >= rank) return 1L << (i + 1);
+        }
+        return tickNanosMax;
+    }
+
+    static long ticks() {
+        return ticks;
+    }
+
+    static long tickNanosMean() {
+        return ticks == 0 ? 0 : tickNanosTotal / ticks;
+    }
+
+    static long tickNanosMax() {
+        return tickNanosMax;
+    }
+
+    static long allocatedBytesPerTick() {
+        return allocationSamples == 0 ? 0 : allocatedBytes / allocationSamples;
+    }
+
+    static long samplerDraws() {
+        return samplerDraws.sum();
+    }
+
+    static long textFits() {
+        return textFits;
+    }
+
+    static long soundPlays() {
+        return soundPlays.sum();
+    }
+
+    static long remindersFired() {
+        return remindersFired.sum();
+    }
+
+    static long configLoads() {
+        return configLoads.get();
+    }
+
+    static long lastConfigLoadNanos() {
+        return configLoadNanos.get();
+    }
+
+    static long configSaves() {
+        return configSaves.get();
+    }
+
+    static long lastConfigSaveNanos() {
+        return configSaveNanos.get();
+    }
+
+    static String summary() {
+        return String.format(
+                "tps=%.1f ticks=%d mean=%dns p50<%dns p99<%dns p999<%dns max=%dns alloc=%dB/tick draws=%d fits=%d sounds=%d fired=%d merged=%d dropped=%d "
+                        + "configLoads=%d (last %.2fms) configSaves=%d (last %.2fms)",
+                serverTps, ticks, tickNanosMean(), tickPercentile(0.50), tickPercentile(0.99), tickPercentile(0.999), tickNanosMax,
+                allocatedBytesPerTick(), samplerDraws(), textFits, soundPlays(), remindersFired(), notificationsMerged, notificationsDropped,
+                configLoads(), lastConfigLoadNanos() / 1e6, configSaves(), lastConfigSaveNanos() / 1e6);
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        try {
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean t
+                    && t.isThreadAllocatedMemorySupported()) {
+                if (!t.isThreadAllocatedMemoryEnabled()) t.setThreadAllocatedMemoryEnabled(true);
+                return t;
+            }
+        } catch (RuntimeException ignored) {
+        }
+        return null;
+    }
+}
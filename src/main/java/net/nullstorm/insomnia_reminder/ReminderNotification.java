@@ -0,0 +1,38 @@
+package net.nullstorm.insomnia_reminder;
+
+import net.minecraft.sound.SoundEvent;
+
+import java.util.Objects;
+
+/**
+ * A reminder on its way to the {@link NotificationSink}s.
+ *
+ * @param kind      what fired
+ * @param message   rendered text; null when there's nothing to show
+ * @param sound     null for none
+ * @param worldTime absolute world time at which it fired
+ * @param merged    how many reminders this one stands for; bursts of the same reminder are merged
+ *                  and only the newest is delivered
+ */
+public record ReminderNotification(Kind kind, String message, SoundEvent sound, long worldTime, int merged) {
+
+    public enum Kind {
+        MORNING,
+        NIGHT,
+        /** A user-defined rule (see the {@code rules} config). */
+        RULE
+    }
+
+    ReminderNotification(Kind kind, String message, SoundEvent sound, long worldTime) {
+        this(kind, message, sound, worldTime, 1);
+    }
+
+    // Morning and night merge with their own kind; rules only with the same message.
+    boolean mergesWith(ReminderNotification other) {
+        return kind == other.kind && (kind != Kind.RULE || Objects.equals(message, other.message));
+    }
+
+    ReminderNotification mergedInto(ReminderNotification newer) {
+        return new ReminderNotification(newer.kind, newer.message, newer.sound, newer.worldTime, merged + newer.merged);
+    }
+}
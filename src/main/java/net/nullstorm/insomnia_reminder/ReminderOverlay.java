@@ -0,0 +1,159 @@
+package net.nullstorm.insomnia_reminder;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.font.TextRenderer;
+import net.minecraft.client.gui.DrawContext;
+import net.minecraft.client.render.RenderTickCounter;
+import net.minecraft.text.OrderedText;
+import net.minecraft.text.Text;
+
+import java.util.Arrays;
+
+/**
+ * On-screen reminders (SCREEN/BOTH display mode), drawn as their own HUD layer instead of through
+ * the vanilla title, so long messages wrap onto several lines and titles from other mods aren't
+ * overwritten. Up to {@link #MAX_VISIBLE} reminders stack above each other; each fades in, stays
+ * for a time that grows with its length, and fades out.
+ * <p>
+ * Layouts come from a {@link TextLayoutCache}, measured once per message and scaled width; a frame
+ * only draws cached lines. Client thread only.
+ */
+final class ReminderOverlay {
+
+    static final int MAX_VISIBLE = 3;
+
+    private static final long FADE_IN_NANOS = 250_000_000L;
+    private static final long FADE_OUT_NANOS = 500_000_000L;
+    private static final long BASE_STAY_NANOS = 3_000_000_000L;
+    private static final long STAY_PER_CHAR_NANOS = 50_000_000L;
+    private static final long MAX_STAY_NANOS = 10_000_000_000L;
+
+    private static final int TEXT_RGB = 0xFFFFFF;
+    private static final int BACKGROUND_ALPHA = 0x60;
+    private static final int PADDING = 3;
+    private static final int GAP = 4;
+
+    private final TextLayoutCache layouts = new TextLayoutCache(512);
+
+    // Visible reminders, oldest first; entries [0, size) are in use.
+    private final String[] messages = new String[MAX_VISIBLE];
+    private final long[] shownAt = new long[MAX_VISIBLE];
+    private final long[] hideAt = new long[MAX_VISIBLE];
+    private final TextLayoutCache.Layout[] layout = new TextLayoutCache.Layout[MAX_VISIBLE];
+    private int size;
+    // Width the entries' layouts were taken at; -1 forces a re-fetch.
+    private int layoutWidth = -1;
+
+    void show(String msg, long now) {
+        String text = msg.strip();
+        if (text.isEmpty()) return;
+
+        int i = indexOf(text);
+        if (i < 0) {
+            if (size == MAX_VISIBLE) removeAt(0);
+            i = size++;
+            messages[i] = text;
+            layout[i] = null;
+            layoutWidth = -1;
+        }
+        // Showing the same text again restarts it in place.
+        shownAt[i] = now;
+        hideAt[i] = now + FADE_IN_NANOS + Math.min(MAX_STAY_NANOS, BASE_STAY_NANOS + text.length() * STAY_PER_CHAR_NANOS);
+    }
+
+    void clear() {
+        Arrays.fill(messages, 0, size, null);
+        Arrays.fill(layout, 0, size, null);
+        size = 0;
+    }
+
+    /** Drops all layouts (font or resource reload). */
+    void invalidate() {
+        layouts.invalidate();
+        layoutWidth = -1;
+    }
+
+    /** Lays out {@code messages} now so showing them later costs no measurement. */
+    void prewarm(Iterable<String> messages, TextRenderer tr, int scaledWidth) {
+        layouts.prewarm(messages, tr::getWidth, maxWidth(scaledWidth));
+    }
+
+    void render(DrawContext ctx, RenderTickCounter tickCounter) {
+        if (size == 0) return;
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (client == null || client.textRenderer == null || client.options.hudHidden) return;
+
+        long now = System.nanoTime();
+        for (int i = size - 1; i >= 0; i--) {
+            if (now >= hideAt[i] + FADE_OUT_NANOS) removeAt(i);
+        }
+        if (size == 0) return;
+
+        TextRenderer tr = client.textRenderer;
+        int width = maxWidth(ctx.getScaledWindowWidth());
+        if (width != layoutWidth) {
+            for (int i = 0; i < size; i++) layout[i] = layouts.layout(tr::getWidth, messages[i], width);
+            layoutWidth = width;
+        }
+
+        int lineHeight = tr.fontHeight + 1;
+        int total = 0;
+        for (int i = 0; i < size; i++) total += layout[i].lines.length * lineHeight + 2 * PADDING + GAP;
+        total -= GAP;
+
+        // Centred a little above the middle, where the vanilla subtitle sits.
+        int cx = ctx.getScaledWindowWidth() / 2;
+        int y = ctx.getScaledWindowHeight() * 2 / 5 - total / 2;
+        for (int i = 0; i < size; i++) {
+            TextLayoutCache.Layout l = layout[i];
+            int h = l.lines.length * lineHeight + 2 * PADDING;
+            int alpha = alpha(now, shownAt[i], hideAt[i]);
+            // Nearly transparent text can render opaque; skip it instead.
+            if (alpha > 8) draw(ctx, tr, l, cx, y, alpha);
+            y += h + GAP;
+        }
+    }
+
+    private static void draw(DrawContext ctx, TextRenderer tr, TextLayoutCache.Layout l, int cx, int y, int alpha) {
+        if (l.ordered == null) {
+            OrderedText[] ordered = new OrderedText[l.lines.length];
+            for (int i = 0; i < ordered.length; i++) ordered[i] = Text.literal(l.lines[i]).asOrderedText();
+            l.ordered = ordered;
+        }
+        int lineHeight = tr.fontHeight + 1;
+        int half = l.width / 2;
+        ctx.fill(cx - half - PADDING, y, cx + half + PADDING, y + l.lines.length * lineHeight + 2 * PADDING,
+                (BACKGROUND_ALPHA * alpha / 255) << 24);
+        int color = alpha << 24 | TEXT_RGB;
+        for (int i = 0; i < l.ordered.length; i++) {
+            ctx.drawCenteredTextWithShadow(tr, l.ordered[i], cx, y + PADDING + i * lineHeight, color);
+        }
+    }
+
+    private static int alpha(long now, long shownAt, long hideAt) {
+        if (now < shownAt + FADE_IN_NANOS) return (int) (255 * (now - shownAt) / FADE_IN_NANOS);
+        if (now < hideAt) return 255;
+        return (int) (255 * (hideAt + FADE_OUT_NANOS - now) / FADE_OUT_NANOS);
+    }
+
+    private static int maxWidth(int scaledWidth) {
+        return Math.max((int) (scaledWidth * 0.85), 180);
+    }
+
+    private int indexOf(String text) {
+        for (int i = 0; i < size; i++) {
+            if (messages[i].equals(text)) return i;
+        }
+        return -1;
+    }
+
+    private void removeAt(int i) {
+        System.arraycopy(messages, i + 1, messages, i, size - i - 1);
+        System.arraycopy(shownAt, i + 1, shownAt, i, size - i - 1);
+        System.arraycopy(hideAt, i + 1, hideAt, i, size - i - 1);
+        System.arraycopy(layout, i + 1, layout, i, size - i - 1);
+        size--;
+        messages[size] = null;
+        layout[size] = null;
+    }
+}
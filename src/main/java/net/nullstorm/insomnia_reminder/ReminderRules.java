@@ -0,0 +1,271 @@
+package net.nullstorm.insomnia_reminder;
+
+import net.nullstorm.insomnia_reminder.InsomniaReminderConfig.ReminderRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/**
+ * User-defined reminder rules compiled into a flat decision table: one primitive column per
+ * condition, plus a time-of-day bucket index holding a bitmask of the rules whose window touches
+ * each {@link #BUCKET_TICKS}-tick bucket.
+ * <p>
+ * A step looks up the bucket first; outside every window that is all it does, however many rules
+ * there are. Inside, only the candidate rules are checked, and only the inputs some rule
+ * references (weather, dimension, the listed statistics) are ever read by the caller.
+ * Immutable once compiled, so it can be shared through a {@link ConfigSnapshot}; when each rule last
+ * fired is kept by the caller (see {@link #cooldowns()}), so it survives recompiling the rules.
+ * {@link #step} doesn't allocate.
+ */
+final class ReminderRules {
+
+    static final int BUCKET_TICKS = 100;
+    private static final int BUCKETS = (int) (ReminderScheduler.DAY_TICKS / BUCKET_TICKS);
+
+    // Weather bits as passed to step()
+    static final int WEATHER_CLEAR = 1;
+    static final int WEATHER_RAIN = 2;
+    static final int WEATHER_THUNDER = 4;
+
+    private static final long NEVER = Long.MIN_VALUE;
+
+    static final ReminderRules EMPTY = compile(List.of(), id -> false);
+
+    // Columns, indexed by rule
+    private final ReminderRule[] rules;
+    private final MessageTemplate[] messages;
+    private final int[] fromTick;
+    private final int[] toTick;
+    private final int[] statIndex;     // into statIds, -1 == no stat condition
+    private final int[] statAtLeast;
+    private final int[] statBelow;     // -1 == no upper bound
+    private final int[] weatherMask;   // WEATHER_* bits accepted
+    private final int[] dimensionIndex; // into dimensionIds, -1 == any
+    private final int[] cooldownTicks;
+
+    // BUCKETS rows of `words` longs
+    private final long[] bucketMasks;
+    private final int words;
+    private final boolean[] bucketUsed;
+
+    private final String[] statIds;
+    private final String[] dimensionIds;
+    private final boolean usesWeather;
+
+    private ReminderRules(List<ReminderRule> rules, List<String> statIds, List<String> dimensionIds,
+                          int[] statIndex, int[] dimensionIndex) {
+        int n = rules.size();
+        this.rules = rules.toArray(new ReminderRule[0]);
+        this.messages = new MessageTemplate[n];
+        this.fromTick = new int[n];
+        this.toTick = new int[n];
+        this.statIndex = statIndex;
+        this.statAtLeast = new int[n];
+        this.statBelow = new int[n];
+        this.weatherMask = new int[n];
+        this.dimensionIndex = dimensionIndex;
+        this.cooldownTicks = new int[n];
+        this.statIds = statIds.toArray(new String[0]);
+        this.dimensionIds = dimensionIds.toArray(new String[0]);
+
+        this.words = (n + 63) >>> 6;
+        this.bucketMasks = new long[BUCKETS * words];
+        this.bucketUsed = new boolean[BUCKETS];
+
+        boolean weather = false;
+        for (int i = 0; i < n; i++) {
+            ReminderRule r = rules.get(i);
+            messages[i] = MessageTemplate.compile(r.message.trim());
+            fromTick[i] = r.fromTick;
+            toTick[i] = r.toTick;
+            statAtLeast[i] = r.statAtLeast;
+            statBelow[i] = r.statBelow;
+            weatherMask[i] = switch (r.weather) {
+                case ANY -> WEATHER_CLEAR | WEATHER_RAIN | WEATHER_THUNDER;
+                case CLEAR -> WEATHER_CLEAR;
+                case RAIN -> WEATHER_RAIN | WEATHER_THUNDER;
+                case THUNDER -> WEATHER_THUNDER;
+            };
+            weather |= r.weather != ReminderRule.Weather.ANY;
+            cooldownTicks[i] = r.cooldownTicks;
+
+            for (int b = 0; b < BUCKETS; b++) {
+                if (overlaps(r.fromTick, r.toTick, b * BUCKET_TICKS, (b + 1) * BUCKET_TICKS)) {
+                    bucketMasks[b * words + (i >>> 6)] |= 1L << i;
+                    bucketUsed[b] = true;
+                }
+            }
+        }
+        this.usesWeather = weather;
+    }
+
+    /**
+     * Compiles the enabled rules. Rules without a message and rules naming a statistic for which
+     * {@code statExists} is false are left out.
+     */
+    static ReminderRules compile(List<ReminderRule> rules, Predicate<String> statExists) {
+        List<ReminderRule> kept = new ArrayList<>();
+        List<String> statIds = new ArrayList<>();
+        List<String> dimensionIds = new ArrayList<>();
+        List<Integer> statIndex = new ArrayList<>();
+        List<Integer> dimensionIndex = new ArrayList<>();
+
+        for (ReminderRule r : rules) {
+            if (!r.enabled || r.message.isBlank()) continue;
+            int stat = -1;
+            if (!r.stat.isBlank()) {
+                String id = normalizeId(r.stat);
+                if (!statExists.test(id)) continue;
+                stat = indexOf(statIds, id);
+            }
+            kept.add(r);
+            statIndex.add(stat);
+            dimensionIndex.add(r.dimension.isBlank() ? -1 : indexOf(dimensionIds, normalizeId(r.dimension)));
+        }
+        return new ReminderRules(kept, statIds, dimensionIds,
+                statIndex.stream().mapToInt(Integer::intValue).toArray(),
+                dimensionIndex.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    int size() {
+        return rules.length;
+    }
+
+    ReminderRule rule(int index) {
+        return rules[index];
+    }
+
+    MessageTemplate message(int index) {
+        return messages[index];
+    }
+
+    /** Statistics referenced by some rule; {@link #step}'s {@code stats} array is indexed the same way. */
+    String[] statIds() {
+        return statIds;
+    }
+
+    /** False when no rule looks at the weather; the caller can pass anything. */
+    boolean usesWeather() {
+        return usesWeather;
+    }
+
+    /** The index to pass to {@link #step} for a dimension, -1 if no rule names it. */
+    int dimensionIndex(String dimensionId) {
+        for (int i = 0; i < dimensionIds.length; i++) {
+            if (dimensionIds[i].equals(dimensionId)) return i;
+        }
+        return -1;
+    }
+
+    /** True if some rule's window contains this time of day; nothing else needs to be read otherwise. */
+    boolean anyCandidate(long absTime) {
+        return bucketUsed[bucket(absTime)];
+    }
+
+    /**
+     * Evaluates the rules whose window contains {@code absTime}. Writes the indexes of the rules that
+     * fire into {@code fired} and returns how many did; at most {@code fired.length} fire per step.
+     *
+     * @param worldAge     cooldowns count ticks of play, not time of day
+     * @param dimension    from {@link #dimensionIndex}
+     * @param weather      a WEATHER_* bit
+     * @param stats        values of {@link #statIds()}, same order
+     * @param lastFiredAge the caller's cooldowns for these rules (see {@link #cooldowns()}); updated
+     */
+    int step(long absTime, long worldAge, int dimension, int weather, int[] stats, long[] lastFiredAge, int[] fired) {
+        int b = bucket(absTime);
+        if (!bucketUsed[b]) return 0;
+
+        int timeOfDay = (int) Math.floorMod(absTime, ReminderScheduler.DAY_TICKS);
+        int count = 0;
+        int row = b * words;
+        for (int w = 0; w < words; w++) {
+            long bits = bucketMasks[row + w];
+            while (bits != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+
+                if (!inWindow(timeOfDay, fromTick[i], toTick[i])) continue;
+                if ((weatherMask[i] & weather) == 0) continue;
+                if (dimensionIndex[i] >= 0 && dimensionIndex[i] != dimension) continue;
+                int s = statIndex[i];
+                if (s >= 0) {
+                    int v = stats[s];
+                    if (v < statAtLeast[i] || (statBelow[i] >= 0 && v >= statBelow[i])) continue;
+                }
+                long last = lastFiredAge[i];
+                if (last != NEVER && worldAge >= last && worldAge - last < cooldownTicks[i]) continue;
+
+                // Full: the rest stay due and fire on a later step instead of starting a cooldown unseen.
+                if (count == fired.length) return count;
+                lastFiredAge[i] = worldAge;
+                fired[count++] = i;
+            }
+        }
+        return count;
+    }
+
+    /** Cooldown state for these rules, one entry per rule, none of them cooling down. */
+    long[] cooldowns() {
+        long[] ages = new long[rules.length];
+        Arrays.fill(ages, NEVER);
+        return ages;
+    }
+
+    /**
+     * Cooldown state for these rules, carried over from {@code previous}: a rule that is unchanged
+     * (equal settings) keeps its cooldown, so recompiling for an unrelated edit doesn't make every
+     * rule whose window is open fire again. New and edited rules start without one.
+     */
+    long[] carryCooldowns(ReminderRules previous, long[] previousAges) {
+        long[] ages = cooldowns();
+        boolean[] taken = new boolean[previous.rules.length];
+        for (int i = 0; i < rules.length; i++) {
+            for (int j = 0; j < previous.rules.length; j++) {
+                if (!taken[j] && previous.rules[j].equals(rules[i])) {
+                    taken[j] = true;
+                    ages[i] = previousAges[j];
+                    break;
+                }
+            }
+        }
+        return ages;
+    }
+
+    /** Forgets every cooldown (new world). */
+    static void resetCooldowns(long[] lastFiredAge) {
+        Arrays.fill(lastFiredAge, NEVER);
+    }
+
+    private static int bucket(long absTime) {
+        return (int) (Math.floorMod(absTime, ReminderScheduler.DAY_TICKS) / BUCKET_TICKS);
+    }
+
+    private static boolean inWindow(int timeOfDay, int from, int to) {
+        if (from == to) return true;
+        return from < to ? timeOfDay >= from && timeOfDay < to : timeOfDay >= from || timeOfDay < to;
+    }
+
+    // Window [from, to) against bucket [start, end)
+    private static boolean overlaps(int from, int to, int start, int end) {
+        if (from == to) return true;
+        if (from < to) return from < end && to > start;
+        return to > start || from < end;
+    }
+
+    // "time_since_rest" -> "minecraft:time_since_rest"
+    private static String normalizeId(String id) {
+        String s = id.trim().toLowerCase(Locale.ROOT);
+        return s.indexOf(':') >= 0 ? s : "minecraft:" + s;
+    }
+
+    private static int indexOf(List<String> list, String value) {
+        int i = list.indexOf(value);
+        if (i >= 0) return i;
+        list.add(value);
+        return list.size() - 1;
+    }
+}
@@ -0,0 +1,56 @@
+package net.nullstorm.insomnia_reminder;
+
+/**
+ * Plans the next absolute world time at which the morning or night trigger could fire.
+ * Until then the client tick only checks that time is still flowing normally and skips
+ * the stat lookup, jump detection and window tests.
+ * <p>
+ * The plan is dropped (and recomputed on the next full evaluation) on time discontinuities,
+ * config saves, world/dimension changes and pause/focus changes.
+ */
+final class ReminderScheduler {
+
+    static final long DAY_TICKS = 24000L;
+
+    // Absolute time of day at which full evaluation resumes. -1 == no plan, evaluate every tick.
+    private long wakeAt = -1;
+
+    void invalidate() {
+        wakeAt = -1;
+    }
+
+    /**
+     * True if nothing can fire at this tick.
+     * {@code delta} is the change in world time since the last tick; anything outside
+     * {@code [0, maxStep]} is a discontinuity and forces a re-plan.
+     */
+    boolean canSkip(long absTime, long delta, long maxStep) {
+        if (wakeAt < 0) return false;
+        if (delta < 0 || delta > maxStep) {
+            wakeAt = -1;
+            return false;
+        }
+        return absTime < wakeAt;
+    }
+
+    /** Re-plans after a full evaluation at {@code absTime}. */
+    void plan(long absTime, boolean morningEnabled, long lastDayPlayedAM, int amTick, int amWindow,
+              boolean nightEnabled, long lastDayPlayedPM, int pmTick, int pmWindow) {
+        long wake = Long.MAX_VALUE;
+        if (morningEnabled) wake = Math.min(wake, windowWake(absTime, lastDayPlayedAM, amTick, amWindow));
+        if (nightEnabled) wake = Math.min(wake, windowWake(absTime, lastDayPlayedPM, pmTick, pmWindow));
+        wakeAt = wake;
+    }
+
+    // Next time the [target, target + window] window of a not-yet-played day is open.
+    private static long windowWake(long absTime, long lastDayPlayed, int target, int window) {
+        long day = Math.floorDiv(absTime, DAY_TICKS);
+        long dayStart = day * DAY_TICKS;
+        int timeOfDay = (int) (absTime - dayStart);
+
+        if (lastDayPlayed != day && timeOfDay <= target + window) {
+            return timeOfDay >= target ? absTime : dayStart + target;
+        }
+        return dayStart + DAY_TICKS + target;
+    }
+}
@@ -0,0 +1,31 @@
+package net.nullstorm.insomnia_reminder;
+
+import net.minecraft.sound.SoundEvent;
+import net.minecraft.util.Identifier;
+
+/**
+ * The mod's sound events, created once.
+ * They're only played client-side, so they aren't put in the (synced) sound event registry;
+ * the sound manager resolves them by id through sounds.json.
+ * <p>
+ * Loading is controlled per entry in sounds.json: {@code "preload": true} decodes the buffer
+ * during resource reload (default for the built-in sounds, so the first play never hitches),
+ * {@code "stream": true} streams long files instead. Entries without preload, such as extra
+ * variants added by a resource pack, load on first use.
+ */
+final class ReminderSounds {
+
+    static final SoundEvent ROOSTER = of("rooster");
+    static final SoundEvent WOLF = of("wolf");
+
+    // Server mode plays to players who may not have the mod (or its sounds.json), so it uses vanilla sounds.
+    static final SoundEvent VANILLA_MORNING = SoundEvent.of(Identifier.ofVanilla("entity.chicken.ambient"));
+    static final SoundEvent VANILLA_NIGHT = SoundEvent.of(Identifier.ofVanilla("entity.wolf.howl"));
+
+    private ReminderSounds() {
+    }
+
+    private static SoundEvent of(String path) {
+        return SoundEvent.of(Identifier.of("insomnia_reminder", path));
+    }
+}
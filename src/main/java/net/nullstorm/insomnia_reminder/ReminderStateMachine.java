@@ -0,0 +1,275 @@
+package net.nullstorm.insomnia_reminder;
+
+/**
+ * Morning / night trigger logic with no Minecraft dependencies.
+ * <p>
+ * Fed one sample per tick (absolute world time, last known TIME_SINCE_REST, overworld or not)
+ * plus the packet events from {@link ClientObservations}; owns the per-day gates, sleep/wake
+ * detection and the next-event plan. The client drives it from the tick, the replay tools in the
+ * jmh source set drive it from traces. One instance per player, not thread-safe, and
+ * {@link #step} must not allocate.
+ */
+final class ReminderStateMachine {
+
+    // 06:00 is timeOfDay == 0 in modern Minecraft (day starts at 06:00).
+    static final int AM_TICK = 0;
+
+    // Night reminder "window" tick. Keep it late evening so it's helpful.
+    // (This value came from the earlier working version; not a gameplay mechanic.)
+    static final int PM_WARN_TICK = 12492;
+
+    // Small window so we don't spam if tick drifts.
+    static final int WINDOW_TICKS = 100;
+
+    // When the night is slept away, client time often jumps forward and the player is ejected
+    // around 06:01–06:04. We treat any morning within this grace window as "wake-up morning".
+    static final int SLEEP_WAKE_GRACE_TICKS = 2400; // ~2 minutes
+
+    // A per-tick step of world time beyond this drops the next-event plan. Steps this big are
+    // packet corrections or jumps; they're classified by timeJump(), not by their size.
+    static final int JUMP_THRESHOLD_TICKS = 200;
+
+    // |timeJump()| above this is a real jump (night skipped, /time set). Normally exactly 0.
+    static final int JUMP_TOLERANCE_TICKS = 20;
+
+    // TIME_SINCE_REST at which phantoms start spawning.
+    static final int PHANTOM_THRESHOLD_TICKS = 72000;
+
+    // step() result bits
+    static final int FIRED_MORNING = 1;
+    static final int FIRED_NIGHT = 2;
+    // A sleep was detected before the server synced the stat; the caller should treat the player as rested.
+    static final int RESTED = 4;
+    // World time passed 06:00 into a later day since the last step, in any dimension and whether or
+    // not the morning reminder is on; for the sleep journal, whose nights run from 06:00 to 06:00.
+    static final int DAY_STARTED = 8;
+
+    private static final long NO_JUMP = Long.MIN_VALUE;
+    private static final long NO_DAY = Long.MIN_VALUE;
+
+    private boolean morningEnabled = true;
+    private boolean nightEnabled = true;
+    private boolean nightAlwaysPlays;
+
+    // Per-day gating
+    private long lastDayPlayedAM = -1;
+    private long lastDayPlayedPM = -1;
+
+    // Day (06:00 to 06:00) of the last step, any dimension; NO_DAY == none yet in this world.
+    private long currentDay = NO_DAY;
+
+    // Last overworld time evaluated; targets passed since then fire. -1 == no continuity.
+    private long lastAbsTimeSeen = -1;
+    private boolean inOverworld = true;
+
+    // Set by packet events between ticks, consumed by the next full evaluation.
+    private long pendingJumpFrom = NO_JUMP;
+    private boolean pendingJumpBackwards;
+    private boolean pendingJumpInfersSleep;
+    private boolean pendingRestReset;
+    private boolean pendingNightSkipped;
+
+    // Next-event planning: between trigger windows the tick only checks for time discontinuities.
+    private final ReminderScheduler scheduler = new ReminderScheduler();
+
+    /** Applies the trigger toggles. A feature toggled off -> on may fire again today (no restart needed). */
+    void configure(boolean morningEnabled, boolean nightEnabled, boolean nightAlwaysPlays) {
+        if (!this.morningEnabled && morningEnabled) lastDayPlayedAM = -1;
+        if (!this.nightEnabled && nightEnabled) lastDayPlayedPM = -1;
+        this.morningEnabled = morningEnabled;
+        this.nightEnabled = nightEnabled;
+        this.nightAlwaysPlays = nightAlwaysPlays;
+        scheduler.invalidate();
+    }
+
+    /** Drops the next-event plan; the next step does a full evaluation. */
+    void invalidatePlan() {
+        scheduler.invalidate();
+    }
+
+    /**
+     * A real time jump (see {@link #timeJump}). With {@code inferSleep}, a jump from night into the
+     * morning counts as a slept night; off when the server sends exact sleep events.
+     */
+    void onTimeJumped(long from, long to, boolean inferSleep) {
+        pendingJumpFrom = from;
+        pendingJumpBackwards |= to < from;
+        pendingJumpInfersSleep = inferSleep;
+        scheduler.invalidate();
+    }
+
+    void onRestReset() {
+        pendingRestReset = true;
+        scheduler.invalidate();
+    }
+
+    /** Exact server event: morning came early because the night was skipped. Doesn't mean this player slept. */
+    void onNightSkipped() {
+        pendingNightSkipped = true;
+        scheduler.invalidate();
+    }
+
+    /** Forgets packet events that were not consumed yet and the time last seen (e.g. on disconnect). */
+    void clearPendingEvents() {
+        pendingJumpFrom = NO_JUMP;
+        pendingJumpBackwards = false;
+        pendingRestReset = false;
+        pendingNightSkipped = false;
+        lastAbsTimeSeen = -1;
+    }
+
+    /**
+     * Replaces the per-day gates, e.g. with the ones stored for the world just joined. Time seen in
+     * the previous world doesn't carry over: the next step starts continuity afresh.
+     */
+    void restoreGates(long lastDayPlayedAM, long lastDayPlayedPM) {
+        this.lastDayPlayedAM = lastDayPlayedAM;
+        this.lastDayPlayedPM = lastDayPlayedPM;
+        currentDay = NO_DAY;
+        lastAbsTimeSeen = -1;
+        scheduler.invalidate();
+    }
+
+    /**
+     * A different world instance (join, respawn, dimension change). Its clock is only valid from its
+     * first world time packet on, and whatever lies between the time seen in the old world and that
+     * one is a discontinuity, not time that passed: targets in between don't fire.
+     */
+    void onWorldChanged() {
+        lastAbsTimeSeen = -1;
+        scheduler.invalidate();
+    }
+
+    long lastDayPlayedAM() {
+        return lastDayPlayedAM;
+    }
+
+    long lastDayPlayedPM() {
+        return lastDayPlayedPM;
+    }
+
+    /**
+     * Trigger evaluation for one tick at absolute world time {@code absTime}.
+     * Updates the per-day gates and returns which reminders fired (FIRED_* bits, plus RESTED and
+     * DAY_STARTED). Reminders only fire in the overworld; elsewhere only DAY_STARTED is reported.
+     * <p>
+     * While time flows continuously, a trigger fires when world time passed its target since the
+     * previous evaluation, however big the step: lag and client stalls advance time in large steps
+     * that can skip a whole window. Only real jumps (events) break continuity. Small backwards
+     * corrections (the client running ahead of a slow server) are not jumps, and the per-day gates
+     * keep the second pass over a target from firing again.
+     */
+    int step(long absTime, int timeSinceRest, boolean overworld) {
+        // Backwards (/time set) only moves the day; a forward jump of several days is one new day.
+        long day = Math.floorDiv(absTime - AM_TICK, ReminderScheduler.DAY_TICKS);
+        int dayStarted = currentDay != NO_DAY && day > currentDay ? DAY_STARTED : 0;
+        currentDay = day;
+
+        if (overworld != inOverworld) {
+            inOverworld = overworld;
+            lastAbsTimeSeen = -1; // a target passed in another dimension doesn't count
+            scheduler.invalidate();
+        }
+        if (!overworld) return dayStarted;
+
+        // Fast path: no trigger target is due yet and time is flowing normally.
+        if (lastAbsTimeSeen != -1 && scheduler.canSkip(absTime, absTime - lastAbsTimeSeen, JUMP_THRESHOLD_TICKS)) {
+            lastAbsTimeSeen = absTime;
+            return dayStarted;
+        }
+
+        int timeOfDay = (int) Math.floorMod(absTime, ReminderScheduler.DAY_TICKS);
+
+        // Packet events (see ClientObservations); consume them once.
+        boolean restJustReset = pendingRestReset;
+        boolean nightSkipped = pendingNightSkipped;
+        long jumpFrom = pendingJumpFrom;
+        boolean jumpedBackwards = pendingJumpBackwards;
+        boolean inferSleep = pendingJumpInfersSleep;
+        pendingRestReset = false;
+        pendingNightSkipped = false;
+        pendingJumpFrom = NO_JUMP;
+        pendingJumpBackwards = false;
+
+        boolean jumped = jumpFrom != NO_JUMP;
+        // Targets passed in (since, absTime] count; nothing counts across a jump or on the first evaluation.
+        long since = jumped || lastAbsTimeSeen == -1 ? absTime : lastAbsTimeSeen;
+        lastAbsTimeSeen = absTime;
+
+        // Time set backwards (e.g. /time set): clear per-day gates so testing doesn't require a restart.
+        if (jumpedBackwards) {
+            lastDayPlayedAM = -1;
+            lastDayPlayedPM = -1;
+        }
+
+        boolean jumpedFromNightToMorning = jumped && inferSleep && jumpFrom < absTime
+                && Math.floorMod(jumpFrom, ReminderScheduler.DAY_TICKS) >= 12000
+                && inWindow(timeOfDay, AM_TICK, SLEEP_WAKE_GRACE_TICKS);
+
+        int result = dayStarted;
+        if (jumpedFromNightToMorning || restJustReset) {
+            // Force-reset insomnia state; the server only syncs stats when asked, so the value can be stale
+            timeSinceRest = 0;
+            result |= RESTED;
+        }
+
+        // ----- Morning (rooster + greeting) -----
+        // Fire once per day. If time jumps to 06:03, still count for that day.
+        long amTarget = lastOccurrence(absTime, AM_TICK);
+        long amDay = Math.floorDiv(amTarget, ReminderScheduler.DAY_TICKS);
+        if (morningEnabled && lastDayPlayedAM != amDay
+                && (amTarget > since || morningDue(timeOfDay, jumpedFromNightToMorning || restJustReset || nightSkipped))) {
+            lastDayPlayedAM = amDay;
+            result |= FIRED_MORNING;
+        }
+
+        // ----- Night reminder (wolf + message) -----
+        long pmTarget = lastOccurrence(absTime, PM_WARN_TICK);
+        long pmDay = Math.floorDiv(pmTarget, ReminderScheduler.DAY_TICKS);
+        if (nightEnabled && lastDayPlayedPM != pmDay) {
+            boolean due = pmTarget > since
+                    ? nightAlwaysPlays || timeSinceRest >= PHANTOM_THRESHOLD_TICKS
+                    : nightDue(timeOfDay, timeSinceRest, nightAlwaysPlays);
+            if (due) {
+                lastDayPlayedPM = pmDay;
+                result |= FIRED_NIGHT;
+            }
+        }
+
+        // Packet events re-plan on their own, so only the exact windows need per-tick evaluation.
+        scheduler.plan(absTime,
+                morningEnabled, lastDayPlayedAM, AM_TICK, WINDOW_TICKS,
+                nightEnabled, lastDayPlayedPM, PM_WARN_TICK, WINDOW_TICKS);
+        return result;
+    }
+
+    /** The latest absolute time {@code <= absTime} whose time of day is {@code target}. */
+    static long lastOccurrence(long absTime, int target) {
+        return Math.floorDiv(absTime - target, ReminderScheduler.DAY_TICKS) * ReminderScheduler.DAY_TICKS + target;
+    }
+
+    /**
+     * How far the time of day moved beyond what the elapsed world age explains; 0 while time flows
+     * normally, however much lag or how many client-side corrections happened in between.
+     * Anything above {@link #JUMP_TOLERANCE_TICKS} is a real jump: positive == forward.
+     *
+     * @param daylightCycle false when the daylight cycle is stopped (time of day doesn't advance)
+     */
+    static long timeJump(long timeOfDayDelta, long worldAgeDelta, boolean daylightCycle) {
+        return timeOfDayDelta - (daylightCycle ? worldAgeDelta : 0);
+    }
+
+    /** Morning rule for a day that hasn't had its reminder yet; {@code woke} == a sleep or skipped night was just detected. */
+    static boolean morningDue(int timeOfDay, boolean woke) {
+        return inWindow(timeOfDay, AM_TICK, WINDOW_TICKS) || (woke && inWindow(timeOfDay, AM_TICK, SLEEP_WAKE_GRACE_TICKS));
+    }
+
+    /** Night rule for a day that hasn't had its reminder yet. */
+    static boolean nightDue(int timeOfDay, int timeSinceRest, boolean alwaysPlays) {
+        return inWindow(timeOfDay, PM_WARN_TICK, WINDOW_TICKS) && (alwaysPlays || timeSinceRest >= PHANTOM_THRESHOLD_TICKS);
+    }
+
+    private static boolean inWindow(int timeOfDay, int target, int windowTicks) {
+        return timeOfDay >= target && timeOfDay <= target + windowTicks;
+    }
+}
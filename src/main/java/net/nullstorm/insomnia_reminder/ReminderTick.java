@@ -0,0 +1,190 @@
+package net.nullstorm.insomnia_reminder;
+
+import net.minecraft.sound.SoundEvent;
+
+import java.util.Random;
+
+/**
+ * The reminder part of a client tick: adopts published config snapshots, re-plans on world,
+ * dimension, pause and focus changes, steps the state machine, evaluates the rules and queues
+ * whatever fired. Everything it reads from the game, and the bookkeeping it leaves to the caller
+ * (journal, gates, observed stats), goes through a {@link Host}, so the client and the soak harness
+ * run this same code.
+ * <p>
+ * Not thread-safe: one per client thread, with its own machine, rule cooldowns and render buffer.
+ */
+final class ReminderTick {
+
+    /** The game side of the tick. Only asked while in a world. */
+    interface Host {
+        /** The current world; a different instance means a join or dimension change. */
+        Object world();
+
+        boolean inOverworld();
+
+        String dimensionId();
+
+        boolean paused();
+
+        /**
+         * False between getting a new world and its first world time packet: until then its clock
+         * reads 0 (06:00), not the server's time.
+         */
+        boolean timeSynced();
+
+        boolean focused();
+
+        long timeOfDay();
+
+        /** Ticks since the world was created; rule cooldowns count in these. */
+        long worldAge();
+
+        /** One of the ReminderRules.WEATHER_* values; only asked when a rule uses the weather. */
+        int weather();
+
+        int timeSinceRest();
+
+        /** Current values of the adopted rules' statistics, in {@link ReminderRules#statIds()} order. */
+        int[] ruleStatValues();
+
+        /** A sleep was seen; called before anything this tick fires. */
+        void rested(long time, int rest);
+
+        /** World time passed 06:00; called after {@link #rested}, so a sleep counts for the night it ended. */
+        void dayStarted(long time);
+
+        /** The morning or night reminder fired and its per-day gate moved; called before it's queued. */
+        void reminderFired(boolean morning, long time, int rest);
+    }
+
+    private final ReminderStateMachine machine;
+    private final NotificationDispatcher notifications;
+    private final MessageTemplate.Values templateValues;
+    private final Random random;
+    private final StringBuilder renderBuffer = new StringBuilder(128);
+
+    // The snapshot this tick was last configured from; null before the first adopt().
+    private ConfigSnapshot adopted;
+    private Object plannedWorld;
+    private boolean plannedInOverworld;
+    private ReminderRules plannedRules;
+    private int plannedRuleDimension;
+    private boolean plannedFocused;
+    private boolean wasPaused;
+    private final int[] firedRules = new int[16];
+    // When each rule of the adopted rules last fired (world age); ours, not the shared snapshot's.
+    private long[] ruleCooldowns = ReminderRules.EMPTY.cooldowns();
+
+    ReminderTick(ReminderStateMachine machine, NotificationDispatcher notifications,
+                 MessageTemplate.Values templateValues, Random random) {
+        this.machine = machine;
+        this.notifications = notifications;
+        this.templateValues = templateValues;
+        this.random = random;
+    }
+
+    ConfigSnapshot adopted() {
+        return adopted;
+    }
+
+    /**
+     * Configures the machine from {@code cfg} and carries rule cooldowns over to its rules.
+     * Returns the snapshot it replaces, null on the first call.
+     */
+    ConfigSnapshot adopt(ConfigSnapshot cfg) {
+        ConfigSnapshot old = adopted;
+        adopted = cfg;
+        if (old == null || cfg.rules != old.rules) {
+            ruleCooldowns = old == null ? cfg.rules.cooldowns() : cfg.rules.carryCooldowns(old.rules, ruleCooldowns);
+        }
+        machine.configure(cfg.morningEnabled, cfg.nightEnabled, cfg.nightAlwaysPlays);
+        return old;
+    }
+
+    /** Forgets when the rules last fired; on leaving a world. */
+    void resetCooldowns() {
+        ReminderRules.resetCooldowns(ruleCooldowns);
+    }
+
+    /**
+     * One tick on {@code cfg}, which must have been adopted; {@code host} is null when not in a
+     * world. Returns the machine's result bits, 0 if it wasn't stepped.
+     */
+    int tick(ConfigSnapshot cfg, Host host) {
+        if (host == null) {
+            // Don't keep the old world alive; joining again always re-plans.
+            plannedWorld = null;
+            machine.invalidatePlan();
+            return 0;
+        }
+        if (!cfg.enabled) return 0;
+
+        boolean paused = host.paused();
+        boolean focused = host.focused();
+        ReminderRules rules = cfg.rules;
+        Object world = host.world();
+        if (world != plannedWorld || paused != wasPaused || focused != plannedFocused || rules != plannedRules) {
+            if (world != plannedWorld) machine.onWorldChanged();
+            plannedWorld = world;
+            plannedInOverworld = host.inOverworld();
+            plannedRules = rules;
+            plannedRuleDimension = rules.size() > 0 ? rules.dimensionIndex(host.dimensionId()) : -1;
+            plannedFocused = focused;
+            wasPaused = paused;
+            machine.invalidatePlan();
+        }
+
+        // Time is frozen while paused; nothing can fire. Nor before the world's time is known.
+        if (paused || !host.timeSynced()) return 0;
+
+        long time = host.timeOfDay();
+        int rest = host.timeSinceRest();
+        int result = machine.step(time, rest, plannedInOverworld);
+        if ((result & ReminderStateMachine.RESTED) != 0) host.rested(time, rest);
+        if ((result & ReminderStateMachine.DAY_STARTED) != 0) host.dayStarted(time);
+        if ((result & ReminderStateMachine.FIRED_MORNING) != 0) {
+            fireDaily(host, cfg, true, time, rest);
+        }
+        if ((result & ReminderStateMachine.FIRED_NIGHT) != 0) {
+            fireDaily(host, cfg, false, time, rest);
+        }
+
+        if (rules.anyCandidate(time)) runRules(host, rules, time);
+        return result;
+    }
+
+    // Only reads the weather and the statistics when some rule needs them.
+    private void runRules(Host host, ReminderRules rules, long time) {
+        int weather = rules.usesWeather() ? host.weather() : ReminderRules.WEATHER_CLEAR;
+        int fired = rules.step(time, host.worldAge(), plannedRuleDimension, weather,
+                host.ruleStatValues(), ruleCooldowns, firedRules);
+        for (int i = 0; i < fired; i++) fireRule(rules, firedRules[i], time);
+    }
+
+    private void fireRule(ReminderRules rules, int index, long time) {
+        ReminderMetrics.reminderFired();
+        SoundEvent sound = switch (rules.rule(index).sound) {
+            case ROOSTER -> ReminderSounds.ROOSTER;
+            case WOLF -> ReminderSounds.WOLF;
+            case NONE -> null;
+        };
+        String msg = rules.message(index).render(templateValues, renderBuffer);
+        notifications.offer(new ReminderNotification(ReminderNotification.Kind.RULE, msg, sound, time));
+    }
+
+    private void fireDaily(Host host, ConfigSnapshot cfg, boolean morning, long time, int rest) {
+        ReminderMetrics.reminderFired();
+        ReminderJfrEvents.reminderFired(morning, morning ? machine.lastDayPlayedAM() : machine.lastDayPlayedPM());
+        host.reminderFired(morning, time, rest);
+
+        // rooster in the morning, wolf howl at night; see the sounds.json mapping
+        notifications.offer(new ReminderNotification(
+                morning ? ReminderNotification.Kind.MORNING : ReminderNotification.Kind.NIGHT,
+                chooseMessage(cfg, morning), morning ? ReminderSounds.ROOSTER : ReminderSounds.WOLF, time));
+    }
+
+    String chooseMessage(ConfigSnapshot cfg, boolean morning) {
+        MessageTemplate msg = cfg.pools.choose(morning, cfg.ultraRareChancePercent, random);
+        return msg != null ? msg.render(templateValues, renderBuffer) : null;
+    }
+}
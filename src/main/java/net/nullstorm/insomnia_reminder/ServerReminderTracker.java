@@ -0,0 +1,231 @@
+package net.nullstorm.insomnia_reminder;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.stat.Stat;
+import net.minecraft.stat.Stats;
+import net.minecraft.util.Identifier;
+import net.minecraft.world.GameRules;
+import net.minecraft.world.World;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Reminder state for every online player on a server, stored column-wise in primitive arrays
+ * indexed by a player slot. Slots are handed out on join and reused after a disconnect.
+ * <p>
+ * Each server tick evaluates the next batch of slots round-robin, sized so every player is
+ * evaluated once per {@link #EVAL_INTERVAL_TICKS}; that is 15 players per tick on a 300-player
+ * server. A trigger fires when world time passed its target since the previous evaluation, so
+ * nothing is missed however far apart evaluations land.
+ * Players with the client mod get no reminders from here, only the phantom threshold event.
+ * Server thread only.
+ */
+final class ServerReminderTracker {
+
+    static final int EVAL_INTERVAL_TICKS = 20;
+
+    // result bits; the first two mean the same as in ReminderStateMachine
+    static final int FIRED_MORNING = ReminderStateMachine.FIRED_MORNING;
+    static final int FIRED_NIGHT = ReminderStateMachine.FIRED_NIGHT;
+    static final int PHANTOM_THRESHOLD = 8;
+
+    /** Server thread callbacks. */
+    interface Listener {
+        /** A reminder fired for a player without the client mod. */
+        void onReminder(ServerPlayerEntity player, boolean morning, long day);
+
+        /** TIME_SINCE_REST of a player with the client mod reached the phantom threshold. */
+        void onPhantomThreshold(ServerPlayerEntity player, int timeSinceRest);
+    }
+
+    private final Listener listener;
+    private final Object2IntOpenHashMap<UUID> slotOf = new Object2IntOpenHashMap<>();
+
+    private ServerPlayerEntity[] players = new ServerPlayerEntity[16];
+    private long[] lastDayAM = new long[16];
+    private long[] lastDayPM = new long[16];
+    private long[] lastTime = new long[16]; // -1 == no continuity (just joined, other dimension)
+    private long[] lastAge = new long[16];
+    private int[] lastRest = new int[16];
+    private boolean[] clientMod = new boolean[16];
+
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int highWater; // slots [0, highWater) have been handed out at least once
+    private int active;
+    private int cursor;
+
+    private boolean morningEnabled = true;
+    private boolean nightEnabled = true;
+    private boolean nightAlwaysPlays;
+    private boolean reminders = true;
+
+    // Resolved once the registries are up (first tick), not at class load.
+    private Stat<Identifier> timeSinceRestStat;
+
+    ServerReminderTracker(Listener listener) {
+        this.listener = listener;
+        slotOf.defaultReturnValue(-1);
+    }
+
+    /** {@code reminders == false}: only track players for the sleep events, never send reminders. */
+    void configure(boolean morningEnabled, boolean nightEnabled, boolean nightAlwaysPlays, boolean reminders) {
+        this.morningEnabled = morningEnabled;
+        this.nightEnabled = nightEnabled;
+        this.nightAlwaysPlays = nightAlwaysPlays;
+        this.reminders = reminders;
+    }
+
+    int size() {
+        return active;
+    }
+
+    /**
+     * Starts tracking a player. The player entity is replaced on respawn and when leaving the End;
+     * adding the new entity again keeps the slot and its gates.
+     *
+     * @param hasClientMod the player runs the client mod, which shows its own reminders
+     */
+    void add(ServerPlayerEntity player, boolean hasClientMod) {
+        UUID id = player.getUuid();
+        int slot = slotOf.getInt(id);
+        if (slot >= 0) {
+            players[slot] = player;
+            clientMod[slot] = hasClientMod;
+            return;
+        }
+
+        slot = freeCount > 0 ? freeSlots[--freeCount] : highWater++;
+        if (slot == players.length) grow();
+        slotOf.put(id, slot);
+        players[slot] = player;
+        lastDayAM[slot] = -1;
+        lastDayPM[slot] = -1;
+        lastTime[slot] = -1;
+        lastRest[slot] = -1;
+        clientMod[slot] = hasClientMod;
+        active++;
+    }
+
+    boolean hasClientMod(ServerPlayerEntity player) {
+        int slot = slotOf.getInt(player.getUuid());
+        return slot >= 0 && clientMod[slot];
+    }
+
+    void remove(ServerPlayerEntity player) {
+        int slot = slotOf.removeInt(player.getUuid());
+        if (slot < 0) return;
+        players[slot] = null;
+        if (freeCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        freeSlots[freeCount++] = slot;
+        active--;
+    }
+
+    void clear() {
+        Arrays.fill(players, null);
+        slotOf.clear();
+        freeCount = 0;
+        highWater = 0;
+        active = 0;
+        cursor = 0;
+    }
+
+    /** Evaluates the next batch of players. */
+    void tick() {
+        if (active == 0) return;
+        if (timeSinceRestStat == null) timeSinceRestStat = Stats.CUSTOM.getOrCreateStat(Stats.TIME_SINCE_REST);
+
+        int batch = (active + EVAL_INTERVAL_TICKS - 1) / EVAL_INTERVAL_TICKS;
+        for (int scanned = 0; batch > 0 && scanned < highWater; scanned++) {
+            if (cursor >= highWater) cursor = 0;
+            int slot = cursor++;
+            ServerPlayerEntity player = players[slot];
+            if (player == null) continue;
+            batch--;
+
+            World world = player.getWorld();
+            boolean overworld = world.getRegistryKey() == World.OVERWORLD;
+            int rest = overworld ? player.getStatHandler().getStat(timeSinceRestStat) : 0;
+            boolean daylightCycle = world.getGameRules().getBoolean(GameRules.DO_DAYLIGHT_CYCLE);
+            int result = evaluate(slot, world.getTime(), world.getTimeOfDay(), daylightCycle, rest, overworld);
+            if (clientMod[slot]) {
+                if ((result & PHANTOM_THRESHOLD) != 0) listener.onPhantomThreshold(player, rest);
+            } else if (reminders) {
+                if ((result & FIRED_MORNING) != 0) listener.onReminder(player, true, lastDayAM[slot]);
+                if ((result & FIRED_NIGHT) != 0) listener.onReminder(player, false, lastDayPM[slot]);
+            }
+        }
+    }
+
+    /**
+     * One evaluation of a slot. Server stats are exact, so a drop in TIME_SINCE_REST since the
+     * last evaluation means the player just slept; no time-jump inference is needed.
+     * Targets passed since the previous evaluation fire unless time jumped in between
+     * (see {@link ReminderStateMachine#timeJump}).
+     */
+    int evaluate(int slot, long age, long time, boolean daylightCycle, int timeSinceRest, boolean overworld) {
+        if (!overworld) {
+            lastTime[slot] = -1; // a target passed in another dimension doesn't count
+            return 0;
+        }
+
+        long previousTime = lastTime[slot];
+        long previousAge = lastAge[slot];
+        int previousRest = lastRest[slot];
+        lastTime[slot] = time;
+        lastAge[slot] = age;
+        lastRest[slot] = timeSinceRest;
+
+        long jump = previousTime == -1 ? 0 : ReminderStateMachine.timeJump(time - previousTime, age - previousAge, daylightCycle);
+        boolean continuous = previousTime != -1
+                && jump >= -ReminderStateMachine.JUMP_TOLERANCE_TICKS && jump <= ReminderStateMachine.JUMP_TOLERANCE_TICKS;
+        long since = continuous ? previousTime : time;
+
+        // /time set backwards: allow today's reminders again.
+        if (jump < -ReminderStateMachine.JUMP_TOLERANCE_TICKS) {
+            lastDayAM[slot] = -1;
+            lastDayPM[slot] = -1;
+        }
+
+        boolean woke = previousRest >= 0 && timeSinceRest < previousRest;
+        int timeOfDay = (int) Math.floorMod(time, ReminderScheduler.DAY_TICKS);
+        long amTarget = ReminderStateMachine.lastOccurrence(time, ReminderStateMachine.AM_TICK);
+        long amDay = Math.floorDiv(amTarget, ReminderScheduler.DAY_TICKS);
+        long pmTarget = ReminderStateMachine.lastOccurrence(time, ReminderStateMachine.PM_WARN_TICK);
+        long pmDay = Math.floorDiv(pmTarget, ReminderScheduler.DAY_TICKS);
+
+        int result = 0;
+        if (previousRest >= 0 && previousRest < ReminderStateMachine.PHANTOM_THRESHOLD_TICKS
+                && timeSinceRest >= ReminderStateMachine.PHANTOM_THRESHOLD_TICKS) {
+            result |= PHANTOM_THRESHOLD;
+        }
+        if (morningEnabled && lastDayAM[slot] != amDay
+                && (amTarget > since || ReminderStateMachine.morningDue(timeOfDay, woke))) {
+            lastDayAM[slot] = amDay;
+            result |= FIRED_MORNING;
+        }
+        if (nightEnabled && lastDayPM[slot] != pmDay) {
+            boolean due = pmTarget > since
+                    ? nightAlwaysPlays || timeSinceRest >= ReminderStateMachine.PHANTOM_THRESHOLD_TICKS
+                    : ReminderStateMachine.nightDue(timeOfDay, timeSinceRest, nightAlwaysPlays);
+            if (due) {
+                lastDayPM[slot] = pmDay;
+                result |= FIRED_NIGHT;
+            }
+        }
+        return result;
+    }
+
+    private void grow() {
+        int cap = players.length * 2;
+        players = Arrays.copyOf(players, cap);
+        lastDayAM = Arrays.copyOf(lastDayAM, cap);
+        lastDayPM = Arrays.copyOf(lastDayPM, cap);
+        lastTime = Arrays.copyOf(lastTime, cap);
+        lastAge = Arrays.copyOf(lastAge, cap);
+        lastRest = Arrays.copyOf(lastRest, cap);
+        clientMod = Arrays.copyOf(clientMod, cap);
+    }
+}
@@ -0,0 +1,42 @@
+package net.nullstorm.insomnia_reminder;
+
+import net.minecraft.network.RegistryByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.codec.PacketCodecs;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.util.Identifier;
+
+/**
+ * Server -> client sleep events, sent by the server companion (InsomniaReminderServer) to players
+ * that have the mod. A client that received {@link #HELLO} trusts these instead of guessing from
+ * world time jumps and stat syncs (see ClientObservations).
+ *
+ * @param type      one of the type constants
+ * @param worldTime absolute world time the event refers to ({@link #NIGHT_SKIPPED}: the time before the skip)
+ * @param value     TIME_SINCE_REST for {@link #HELLO} and {@link #PHANTOM_THRESHOLD}, the time after the skip
+ *                  for {@link #NIGHT_SKIPPED}, otherwise 0
+ */
+record SleepEventPayload(byte type, long worldTime, long value) implements CustomPayload {
+
+    /** Sent on join: the server sends exact events from now on. */
+    static final byte HELLO = 0;
+    /** The player got out of bed; TIME_SINCE_REST is now 0. */
+    static final byte WOKE = 1;
+    /** Everyone asleep, the night was skipped. Also sent to players who stayed awake. */
+    static final byte NIGHT_SKIPPED = 2;
+    /** TIME_SINCE_REST reached the phantom threshold. */
+    static final byte PHANTOM_THRESHOLD = 3;
+
+    static final CustomPayload.Id<SleepEventPayload> ID = new CustomPayload.Id<>(Identifier.of("insomnia_reminder", "sleep_event"));
+
+    static final PacketCodec<RegistryByteBuf, SleepEventPayload> CODEC = PacketCodec.tuple(
+            PacketCodecs.BYTE, SleepEventPayload::type,
+            PacketCodecs.VAR_LONG, SleepEventPayload::worldTime,
+            PacketCodecs.VAR_LONG, SleepEventPayload::value,
+            SleepEventPayload::new);
+
+    @Override
+    public Id<? extends CustomPayload> getId() {
+        return ID;
+    }
+}
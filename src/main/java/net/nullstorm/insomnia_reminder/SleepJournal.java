@@ -0,0 +1,195 @@
+package net.nullstorm.insomnia_reminder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The player's sleep history. Every sleep, morning and night reminder is appended as a fixed
+ * {@link #RECORD_BYTES}-byte record to {@code config/insomnia_reminder/sleep-journal.bin}, rotated
+ * at {@link #MAX_BYTES} with {@link #ROTATED_FILES} old files kept, so the journal stays under a
+ * megabyte however long it runs. Alongside it, the {@link SleepStats} aggregates are updated per
+ * event and saved to {@code sleep-stats.bin}; the stats screen reads those, never the journal.
+ * <p>
+ * All file I/O (loading the aggregates, appending, rotating, saving) happens on one daemon thread.
+ * {@link #record} only queues; if the writer falls more than {@link #BACKLOG} events behind, new
+ * events are dropped rather than blocking the caller.
+ */
+final class SleepJournal {
+
+    static final String JOURNAL_FILE = "sleep-journal.bin";
+    static final String STATS_FILE = "sleep-stats.bin";
+    static final long MAX_BYTES = 256 * 1024;
+    static final int ROTATED_FILES = 3;
+    static final int BACKLOG = 256;
+
+    // wall clock millis, world key, world time, TIME_SINCE_REST, type, 3 bytes padding
+    static final int RECORD_BYTES = 32;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("insomnia_reminder");
+
+    private static final int MAGIC = 0x49525353; // "IRSS"
+    private static final int VERSION = 1;
+
+    private record Event(byte type, long wallMillis, long worldKey, long worldTime, int timeSinceRest) {}
+
+    private static final Event STOP = new Event((byte) 0, 0, 0, 0, 0);
+
+    private final Path journal;
+    private final Path statsFile;
+    private final BlockingQueue<Event> queue = new ArrayBlockingQueue<>(BACKLOG);
+
+    // Null until the writer has loaded the saved aggregates.
+    private volatile SleepStats stats;
+    private Thread writer;
+    private boolean dropWarned;
+
+    SleepJournal(Path configDir) {
+        Path dir = configDir.resolve(MessagePacks.DIR_NAME);
+        this.journal = dir.resolve(JOURNAL_FILE);
+        this.statsFile = dir.resolve(STATS_FILE);
+    }
+
+    /** Starts the writer, which loads the saved aggregates first. */
+    void start() {
+        if (writer != null) return;
+        writer = new Thread(this::run, "Insomnia Reminder sleep journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Current aggregates, or null while they're still loading. */
+    SleepStats stats() {
+        return stats;
+    }
+
+    /** Queues one event ({@link SleepStats#SLEPT}, {@link SleepStats#DAY_STARTED} or {@link SleepStats#NIGHT_REMINDER}). */
+    void record(byte type, long worldKey, long worldTime, int timeSinceRest) {
+        if (queue.offer(new Event(type, System.currentTimeMillis(), worldKey, worldTime, timeSinceRest))) return;
+        if (!dropWarned) {
+            dropWarned = true;
+            LOGGER.warn("[Insomnia Reminder] Sleep journal writer is behind; dropping events");
+        }
+    }
+
+    /** Lets the writer finish what's queued, waiting at most {@code millis} (used at shutdown). */
+    void close(long millis) {
+        if (writer == null) return;
+        try {
+            if (queue.offer(STOP, millis, TimeUnit.MILLISECONDS)) writer.join(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // -------- writer thread --------
+
+    private void run() {
+        SleepStats current = loadStats();
+        stats = current;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        ByteBuffer snapshot = ByteBuffer.allocate(8 + SleepStats.BYTES);
+        boolean unsaved = false;
+        try {
+            while (true) {
+                Event e = queue.take();
+                if (e == STOP) {
+                    if (unsaved) saveStats(snapshot, current);
+                    return;
+                }
+                append(record, e);
+                current = current.apply(e.type(), e.timeSinceRest());
+                stats = current;
+                unsaved = true;
+                // Save once the queued burst is written rather than after every event.
+                if (queue.isEmpty()) {
+                    saveStats(snapshot, current);
+                    unsaved = false;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void append(ByteBuffer record, Event e) {
+        record.clear();
+        record.putLong(e.wallMillis()).putLong(e.worldKey()).putLong(e.worldTime())
+                .putInt(e.timeSinceRest()).put(e.type()).put((byte) 0).putShort((short) 0);
+        record.flip();
+        try {
+            Files.createDirectories(journal.getParent());
+            if (Files.exists(journal) && Files.size(journal) >= MAX_BYTES) rotate();
+            try (FileChannel ch = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND)) {
+                // A torn record from a crash would shift every later one; realign to the record size.
+                long size = ch.size();
+                if (size % RECORD_BYTES != 0) ch.truncate(size - size % RECORD_BYTES);
+                while (record.hasRemaining()) ch.write(record);
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("[Insomnia Reminder] Could not write {}", journal, ex);
+        }
+    }
+
+    private void rotate() throws IOException {
+        Files.deleteIfExists(rotated(ROTATED_FILES));
+        for (int i = ROTATED_FILES - 1; i >= 1; i--) {
+            if (Files.exists(rotated(i))) Files.move(rotated(i), rotated(i + 1));
+        }
+        Files.move(journal, rotated(1));
+    }
+
+    private Path rotated(int n) {
+        return journal.resolveSibling(JOURNAL_FILE + "." + n);
+    }
+
+    private SleepStats loadStats() {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(statsFile);
+        } catch (NoSuchFileException e) {
+            return SleepStats.EMPTY;
+        } catch (IOException e) {
+            LOGGER.warn("[Insomnia Reminder] Could not read {}", statsFile, e);
+            return SleepStats.EMPTY;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        if (bytes.length < 8 + SleepStats.BYTES || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+            LOGGER.warn("[Insomnia Reminder] Ignoring unreadable {}", statsFile);
+            return SleepStats.EMPTY;
+        }
+        return SleepStats.read(buf);
+    }
+
+    private void saveStats(ByteBuffer buf, SleepStats s) {
+        buf.clear();
+        buf.putInt(MAGIC).putInt(VERSION);
+        s.write(buf);
+        Path tmp = statsFile.resolveSibling(STATS_FILE + ".tmp");
+        try {
+            Files.createDirectories(statsFile.getParent());
+            Files.write(tmp, buf.array(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            try {
+                Files.move(tmp, statsFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, statsFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            LOGGER.error("[Insomnia Reminder] Could not save {}", statsFile, e);
+        }
+    }
+}
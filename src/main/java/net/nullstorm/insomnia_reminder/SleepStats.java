@@ -0,0 +1,76 @@
+package net.nullstorm.insomnia_reminder;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Sleep history aggregates, updated one journal event at a time by {@link #apply} (never by
+ * rescanning the journal). A night is the span between two 06:00s of world time (recorded whether
+ * or not the morning reminder is on, and in any dimension); it counts as slept if a sleep was seen
+ * in it. A night reminder counts as heeded if a sleep followed it that night.
+ * <p>
+ * The aggregates are merged across every world played: a night ends at the next 06:00 seen in
+ * whichever world the player is in. Each journal record carries its world key, so per-world
+ * numbers can still be rebuilt from the journal.
+ *
+ * @param nightsSlept            nights with a sleep
+ * @param nightsAwake            nights without one
+ * @param currentStreak          nights awake in a row, up to now
+ * @param longestStreak          longest such run ever
+ * @param nightReminders         night reminders fired
+ * @param nightRemindersHeeded   night reminders followed by a sleep the same night
+ * @param restAtReminderTotal    sum of TIME_SINCE_REST at the night reminders (for the average)
+ * @param restAtReminderMax      highest TIME_SINCE_REST at a night reminder
+ * @param sleptTonight           a sleep was seen since the last 06:00
+ * @param reminderPending        a night reminder fired since the last 06:00 and wasn't heeded yet
+ */
+record SleepStats(long nightsSlept, long nightsAwake, int currentStreak, int longestStreak,
+                  long nightReminders, long nightRemindersHeeded,
+                  long restAtReminderTotal, int restAtReminderMax,
+                  boolean sleptTonight, boolean reminderPending) {
+
+    static final SleepStats EMPTY = new SleepStats(0, 0, 0, 0, 0, 0, 0, 0, false, false);
+
+    // Journal event types
+    static final byte SLEPT = 1;
+    /** World time passed 06:00: the night is over. */
+    static final byte DAY_STARTED = 2;
+    static final byte NIGHT_REMINDER = 3;
+
+    static final int BYTES = 8 + 8 + 4 + 4 + 8 + 8 + 8 + 4 + 1 + 1;
+
+    /** The aggregates after one more journal event. */
+    SleepStats apply(byte type, int timeSinceRest) {
+        return switch (type) {
+            case SLEPT -> new SleepStats(nightsSlept, nightsAwake, currentStreak, longestStreak,
+                    nightReminders, nightRemindersHeeded + (reminderPending ? 1 : 0),
+                    restAtReminderTotal, restAtReminderMax, true, false);
+            case DAY_STARTED -> sleptTonight
+                    ? new SleepStats(nightsSlept + 1, nightsAwake, 0, longestStreak,
+                    nightReminders, nightRemindersHeeded, restAtReminderTotal, restAtReminderMax, false, false)
+                    : new SleepStats(nightsSlept, nightsAwake + 1, currentStreak + 1, Math.max(longestStreak, currentStreak + 1),
+                    nightReminders, nightRemindersHeeded, restAtReminderTotal, restAtReminderMax, false, false);
+            case NIGHT_REMINDER -> new SleepStats(nightsSlept, nightsAwake, currentStreak, longestStreak,
+                    nightReminders + 1, nightRemindersHeeded,
+                    restAtReminderTotal + timeSinceRest, Math.max(restAtReminderMax, timeSinceRest),
+                    sleptTonight, true);
+            default -> this;
+        };
+    }
+
+    int averageRestAtReminder() {
+        return nightReminders == 0 ? 0 : (int) (restAtReminderTotal / nightReminders);
+    }
+
+    void write(ByteBuffer buf) {
+        buf.putLong(nightsSlept).putLong(nightsAwake).putInt(currentStreak).putInt(longestStreak)
+                .putLong(nightReminders).putLong(nightRemindersHeeded)
+                .putLong(restAtReminderTotal).putInt(restAtReminderMax)
+                .put((byte) (sleptTonight ? 1 : 0)).put((byte) (reminderPending ? 1 : 0));
+    }
+
+    static SleepStats read(ByteBuffer buf) {
+        return new SleepStats(buf.getLong(), buf.getLong(), buf.getInt(), buf.getInt(),
+                buf.getLong(), buf.getLong(), buf.getLong(), buf.getInt(),
+                buf.get() != 0, buf.get() != 0);
+    }
+}
@@ -0,0 +1,132 @@
+package net.nullstorm.insomnia_reminder;
+
+import net.minecraft.text.OrderedText;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Word-wrapped line layouts keyed by message, for one scaled width at a time.
+ * A width change (resize, GUI scale) drops everything; font/resource reloads call {@link #invalidate()}.
+ * Bounded LRU so large message packs can't grow it without limit.
+ * Client thread only.
+ */
+final class TextLayoutCache {
+
+    /**
+     * A message broken into lines no wider than the width it was laid out for.
+     * {@link #ordered} is filled in by the renderer on first draw and then reused.
+     */
+    static final class Layout {
+        final String[] lines;
+        final int[] widths;
+        final int width;
+        OrderedText[] ordered;
+
+        Layout(String[] lines, int[] widths) {
+            this.lines = lines;
+            this.widths = widths;
+            int w = 0;
+            for (int lineWidth : widths) w = Math.max(w, lineWidth);
+            this.width = w;
+        }
+    }
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, Layout> layouts;
+    private int cachedWidth = -1;
+
+    TextLayoutCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.layouts = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Layout> eldest) {
+                return size() > TextLayoutCache.this.maxEntries;
+            }
+        };
+    }
+
+    /** Returns {@code msg} laid out for {@code maxWidthPx}, measuring only on a cache miss. */
+    Layout layout(ToIntFunction<String> width, String msg, int maxWidthPx) {
+        if (maxWidthPx != cachedWidth) {
+            layouts.clear();
+            cachedWidth = maxWidthPx;
+        }
+        Layout hit = layouts.get(msg);
+        if (hit != null) return hit;
+
+        ReminderMetrics.textFit();
+        String[] lines = wrapToWidth(width, msg, maxWidthPx);
+        int[] widths = new int[lines.length];
+        for (int i = 0; i < lines.length; i++) widths[i] = width.applyAsInt(lines[i]);
+        Layout layout = new Layout(lines, widths);
+        layouts.put(msg, layout);
+        return layout;
+    }
+
+    /** Lays out every message ahead of time so displaying them later costs no measurement. */
+    void prewarm(Iterable<String> messages, ToIntFunction<String> width, int maxWidthPx) {
+        for (String msg : messages) layout(width, msg, maxWidthPx);
+    }
+
+    void invalidate() {
+        layouts.clear();
+        cachedWidth = -1;
+    }
+
+    /**
+     * Greedy word wrap: words are measured once each and packed onto lines; explicit newlines are
+     * kept, and a word wider than a whole line is split between characters.
+     * Width function instead of TextRenderer so layout can be measured headless.
+     */
+    static String[] wrapToWidth(ToIntFunction<String> width, String s, int maxWidthPx) {
+        if (s == null || s.isBlank()) return new String[0];
+        List<String> out = new ArrayList<>(4);
+        int spaceWidth = width.applyAsInt(" ");
+        StringBuilder line = new StringBuilder(64);
+
+        for (String paragraph : s.strip().split("\n", -1)) {
+            line.setLength(0);
+            int lineWidth = 0;
+            for (String word : paragraph.split(" ")) {
+                if (word.isEmpty()) continue;
+                int w = width.applyAsInt(word);
+                if (line.length() > 0 && lineWidth + spaceWidth + w <= maxWidthPx) {
+                    line.append(' ').append(word);
+                    lineWidth += spaceWidth + w;
+                    continue;
+                }
+                if (line.length() > 0) out.add(line.toString());
+                line.setLength(0);
+                // Too wide for any line: emit full-width pieces, keep the rest for the next word.
+                while (w > maxWidthPx) {
+                    int cut = fittingPrefix(width, word, maxWidthPx);
+                    out.add(word.substring(0, cut));
+                    word = word.substring(cut);
+                    w = width.applyAsInt(word);
+                }
+                line.append(word);
+                lineWidth = w;
+            }
+            // Blank paragraphs stay as empty lines; a split word may have left nothing over.
+            if (line.length() > 0 || paragraph.isBlank()) out.add(line.toString());
+        }
+        return out.toArray(new String[0]);
+    }
+
+    // Longest prefix that fits, at least one code point so wrapping always makes progress.
+    private static int fittingPrefix(ToIntFunction<String> width, String word, int maxWidthPx) {
+        int lo = 0, hi = word.length();
+        while (lo < hi) {
+            int mid = (lo + hi + 1) / 2;
+            if (width.applyAsInt(word.substring(0, mid)) <= maxWidthPx) lo = mid;
+            else hi = mid - 1;
+        }
+        // Don't cut a surrogate pair in half.
+        if (lo > 0 && lo < word.length() && Character.isHighSurrogate(word.charAt(lo - 1))) lo--;
+        return Math.max(lo, Character.charCount(word.codePointAt(0)));
+    }
+}
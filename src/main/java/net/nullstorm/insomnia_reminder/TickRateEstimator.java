@@ -0,0 +1,44 @@
+package net.nullstorm.insomnia_reminder;
+
+/**
+ * Server tick rate from world time packets: world age advanced (ticks the server actually ran)
+ * against wall-clock time between packets, exponentially smoothed. Reads 20 until two packets
+ * have been seen. Not thread-safe.
+ */
+final class TickRateEstimator {
+
+    static final double NOMINAL_TPS = 20.0;
+
+    private static final double ALPHA = 0.3;
+
+    // Packets delivered in a burst after a client stall carry no rate information.
+    private static final long MIN_SAMPLE_NANOS = 250_000_000L;
+
+    private long lastAge = -1;
+    private long lastNanos;
+    private double tps = NOMINAL_TPS;
+
+    void update(long worldAge, long nanos) {
+        if (lastAge < 0 || worldAge < lastAge) {
+            lastAge = worldAge;
+            lastNanos = nanos;
+            return;
+        }
+        long elapsed = nanos - lastNanos;
+        if (elapsed < MIN_SAMPLE_NANOS) return;
+
+        double sample = Math.min((worldAge - lastAge) * 1e9 / elapsed, 2 * NOMINAL_TPS);
+        tps += ALPHA * (sample - tps);
+        lastAge = worldAge;
+        lastNanos = nanos;
+    }
+
+    double tps() {
+        return tps;
+    }
+
+    void reset() {
+        lastAge = -1;
+        tps = NOMINAL_TPS;
+    }
+}
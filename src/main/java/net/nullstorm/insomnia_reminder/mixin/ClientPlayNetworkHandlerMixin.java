@@ -0,0 +1,48 @@
+package net.nullstorm.insomnia_reminder.mixin;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.network.packet.s2c.play.StatisticsS2CPacket;
+import net.minecraft.network.packet.s2c.play.WorldTimeUpdateS2CPacket;
+import net.nullstorm.insomnia_reminder.ClientObservations;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * Observes world time and statistics packets so the reminder logic gets events
+ * instead of polling every tick.
+ * Handlers first run on the network thread and bounce to the client thread; we only
+ * act on the client thread (TAIL is never reached on the network thread).
+ */
+@Mixin(ClientPlayNetworkHandler.class)
+public abstract class ClientPlayNetworkHandlerMixin {
+
+    @Unique
+    private long insomnia_reminder$ageBefore = Long.MIN_VALUE;
+    @Unique
+    private long insomnia_reminder$timeBefore = Long.MIN_VALUE;
+
+    @Inject(method = "onWorldTimeUpdate", at = @At("HEAD"))
+    private void insomnia_reminder$beforeWorldTime(WorldTimeUpdateS2CPacket packet, CallbackInfo ci) {
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (!client.isOnThread()) return;
+        insomnia_reminder$ageBefore = client.world != null ? client.world.getTime() : Long.MIN_VALUE;
+        insomnia_reminder$timeBefore = client.world != null ? client.world.getTimeOfDay() : Long.MIN_VALUE;
+    }
+
+    @Inject(method = "onWorldTimeUpdate", at = @At("TAIL"))
+    private void insomnia_reminder$afterWorldTime(WorldTimeUpdateS2CPacket packet, CallbackInfo ci) {
+        ClientObservations.onWorldTime(MinecraftClient.getInstance().world, insomnia_reminder$ageBefore, insomnia_reminder$timeBefore,
+                packet.time(), packet.timeOfDay(), packet.tickDayTime());
+        insomnia_reminder$ageBefore = Long.MIN_VALUE;
+        insomnia_reminder$timeBefore = Long.MIN_VALUE;
+    }
+
+    @Inject(method = "onStatistics", at = @At("TAIL"))
+    private void insomnia_reminder$afterStatistics(StatisticsS2CPacket packet, CallbackInfo ci) {
+        ClientObservations.onStatistics(packet.stats());
+    }
+}